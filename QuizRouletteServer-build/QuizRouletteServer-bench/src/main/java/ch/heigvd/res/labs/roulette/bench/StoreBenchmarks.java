@@ -0,0 +1,43 @@
+package ch.heigvd.res.labs.roulette.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the store benchmarks once for every thread count between 1 and the
+ * number of available cores (powers of two, plus the number of cores), and
+ * writes the results of each run to store-benchmarks-&lt;threads&gt;t.json.
+ *
+ * The optional argument is a regular expression selecting the benchmarks
+ * (e.g. "pickRandomStudent"); by default, all store benchmarks are run.
+ */
+public class StoreBenchmarks {
+
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : "StudentsStore";
+    for (int threads : threadCounts(Runtime.getRuntime().availableProcessors())) {
+      Options options = new OptionsBuilder()
+        .include(include)
+        .threads(threads)
+        .resultFormat(ResultFormatType.JSON)
+        .result("store-benchmarks-" + threads + "t.json")
+        .build();
+      new Runner(options).run();
+    }
+  }
+
+  static List<Integer> threadCounts(int cores) {
+    List<Integer> counts = new ArrayList<>();
+    for (int threads = 1; threads < cores; threads *= 2) {
+      counts.add(threads);
+    }
+    counts.add(cores);
+    return counts;
+  }
+
+}
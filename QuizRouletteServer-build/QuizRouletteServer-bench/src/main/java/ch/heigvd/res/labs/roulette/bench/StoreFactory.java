@@ -0,0 +1,105 @@
+package ch.heigvd.res.labs.roulette.bench;
+
+import ch.heigvd.res.labs.roulette.data.IStudentsStore;
+import ch.heigvd.res.labs.roulette.data.IndexedStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.MappedRosterStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.RosterFile;
+import ch.heigvd.res.labs.roulette.data.SnapshotStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.WriteAheadLogStudentsStore;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Creates the IStudentsStore implementations and the test data used by the
+ * benchmarks. The store types are the values of the "store" benchmark
+ * parameter. The write-ahead log store (over an indexed store) and the mapped
+ * roster store keep their students in files, in a directory given by the
+ * benchmark.
+ */
+final class StoreFactory {
+
+  static final String LINKED = "linked";
+  static final String INDEXED = "indexed";
+  static final String SNAPSHOT = "snapshot";
+  static final String WAL = "wal";
+  static final String MAPPED = "mapped";
+
+  private StoreFactory() {
+  }
+
+  /**
+   * Creates a store holding the given students (for the mapped store, they are
+   * written to the roster file it maps).
+   *
+   * @param directory where the files of the store are created (the previous
+   * store created there must have been disposed of)
+   */
+  static IStudentsStore createStore(String type, List<Student> students, Path directory) throws IOException {
+    IStudentsStore store;
+    switch (type) {
+      case LINKED:
+        store = new StudentsStoreImpl();
+        break;
+      case INDEXED:
+        store = new IndexedStudentsStoreImpl();
+        break;
+      case SNAPSHOT:
+        store = new SnapshotStudentsStoreImpl();
+        break;
+      case WAL:
+        store = new WriteAheadLogStudentsStore(new IndexedStudentsStoreImpl(), directory.resolve("students.wal"));
+        break;
+      case MAPPED:
+        Path roster = directory.resolve("students.roster");
+        RosterFile.write(students, roster);
+        return new MappedRosterStudentsStoreImpl(roster);
+      default:
+        throw new IllegalArgumentException("Unknown store type: " + type);
+    }
+    store.addStudents(students);
+    return store;
+  }
+
+  /**
+   * Closes a store created by createStore() and deletes its files (otherwise,
+   * the next write-ahead log store would replay them).
+   */
+  static void dispose(IStudentsStore store, Path directory) throws IOException {
+    if (store instanceof Closeable) {
+      ((Closeable) store).close();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  static List<Student> createStudents(int count) {
+    List<Student> students = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      students.add(new Student("student " + i));
+    }
+    return students;
+  }
+
+  /**
+   * Builds what a client sends after the LOAD command: one name per line,
+   * followed by the end of data marker.
+   */
+  static String createLoadPayload(int count) {
+    StringBuilder sb = new StringBuilder(count * 16);
+    for (int i = 0; i < count; i++) {
+      sb.append("student ").append(i).append('\n');
+    }
+    return sb.append("ENDOFDATA\n").toString();
+  }
+
+}
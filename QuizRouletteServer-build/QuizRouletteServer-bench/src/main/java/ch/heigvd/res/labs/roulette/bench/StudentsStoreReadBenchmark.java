@@ -0,0 +1,74 @@
+package ch.heigvd.res.labs.roulette.bench;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.IStudentsStore;
+import ch.heigvd.res.labs.roulette.data.Student;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the read operations (RANDOM, INFO and LIST) of the
+ * IStudentsStore implementations. The store is shared by all benchmark
+ * threads, as it is shared by all client sessions in the server; run with
+ * different thread counts (-t, or StoreBenchmarks) to measure contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class StudentsStoreReadBenchmark {
+
+  @Param({StoreFactory.LINKED, StoreFactory.INDEXED, StoreFactory.SNAPSHOT, StoreFactory.WAL, StoreFactory.MAPPED})
+  public String store;
+
+  @Param({"10", "1000", "100000", "10000000"})
+  public int size;
+
+  private IStudentsStore studentsStore;
+  private Path directory;
+
+  @Setup
+  public void fillStore() throws IOException {
+    directory = Files.createTempDirectory("roulette-bench");
+    studentsStore = StoreFactory.createStore(store, StoreFactory.createStudents(size), directory);
+  }
+
+  @TearDown
+  public void disposeStore() throws IOException {
+    StoreFactory.dispose(studentsStore, directory);
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  public Student pickRandomStudent() throws EmptyStoreException {
+    return studentsStore.pickRandomStudent();
+  }
+
+  @Benchmark
+  public int getNumberOfStudents() {
+    return studentsStore.getNumberOfStudents();
+  }
+
+  @Benchmark
+  public List<Student> listStudents() {
+    return studentsStore.listStudents();
+  }
+
+}
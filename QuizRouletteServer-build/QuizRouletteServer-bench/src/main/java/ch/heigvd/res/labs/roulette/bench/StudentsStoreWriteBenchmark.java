@@ -0,0 +1,92 @@
+package ch.heigvd.res.labs.roulette.bench;
+
+import ch.heigvd.res.labs.roulette.data.IStudentsStore;
+import ch.heigvd.res.labs.roulette.data.Student;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of the whole-store write operations (LOAD and CLEAR) of the
+ * IStudentsStore implementations. Each invocation starts from a known state,
+ * rebuilt outside of the measured region, hence the single shot mode. The state
+ * is per thread: with several threads, every thread writes its own store (a
+ * shared store could not be rebuilt while the other threads write to it), so
+ * the threads only compete for the memory and the disk, not for the locks of
+ * the store.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class StudentsStoreWriteBenchmark {
+
+  @Param({StoreFactory.LINKED, StoreFactory.INDEXED, StoreFactory.SNAPSHOT, StoreFactory.WAL, StoreFactory.MAPPED})
+  public String store;
+
+  @Param({"10", "1000", "100000", "10000000"})
+  public int size;
+
+  private IStudentsStore studentsStore;
+  private List<Student> students;
+  private String loadPayload;
+  private Path directory;
+
+  @Setup(Level.Trial)
+  public void createData() throws IOException {
+    students = StoreFactory.createStudents(size);
+    loadPayload = StoreFactory.createLoadPayload(size);
+    directory = Files.createTempDirectory("roulette-bench");
+  }
+
+  @Setup(Level.Invocation)
+  public void fillStore() throws IOException {
+    studentsStore = StoreFactory.createStore(store, students, directory);
+  }
+
+  @TearDown(Level.Invocation)
+  public void disposeStore() throws IOException {
+    StoreFactory.dispose(studentsStore, directory);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteDirectory() throws IOException {
+    Files.delete(directory);
+  }
+
+  /**
+   * Imports a roster of the benchmark size into a store holding a roster of the
+   * same size (what the server does when a client sends LOAD).
+   */
+  @Benchmark
+  public IStudentsStore importData() throws IOException {
+    studentsStore.importData(new BufferedReader(new StringReader(loadPayload)));
+    return studentsStore;
+  }
+
+  @Benchmark
+  public IStudentsStore clear() {
+    studentsStore.clear();
+    return studentsStore;
+  }
+
+}
@@ -1,9 +1,25 @@
 package ch.heigvd.res.labs.roulette;
 
+import ch.heigvd.res.labs.roulette.data.AbstractStudentsStore;
+import ch.heigvd.res.labs.roulette.data.IRandomSource;
+import ch.heigvd.res.labs.roulette.data.ImportMode;
+import ch.heigvd.res.labs.roulette.data.MappedRosterStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.IndexedStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.SeededRandomSource;
+import ch.heigvd.res.labs.roulette.data.SnapshotStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.StudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.ThreadLocalRandomSource;
+import ch.heigvd.res.labs.roulette.data.WriteAheadLogStudentsStore;
+import ch.heigvd.res.labs.roulette.logging.RingBufferLogHandler;
 import ch.heigvd.res.labs.roulette.net.protocol.RouletteV1Protocol;
 import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV3Protocol;
+import ch.heigvd.res.labs.roulette.net.server.ClientWorkerExecutors;
 import ch.heigvd.res.labs.roulette.net.server.RouletteServer;
+import ch.heigvd.res.labs.roulette.net.server.ServerMode;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,17 +32,161 @@ import java.util.logging.Logger;
  */
 public class QuizRouletteServer {
 
+  /*
+   * The parent of all the loggers of the application (kept here, otherwise its
+   * handlers could be lost when it is garbage collected)
+   */
+  private static final Logger APPLICATION_LOGGER = Logger.getLogger(QuizRouletteServer.class.getPackage().getName());
+
   /**
    * The main method creates a new Roulette server, which will accept TCP connection
    * requests on the default port defined in the Roulette Protocol specification.
+   * --protocol=1|2|3 selects the version of the protocol (1 by default) and
+   * its default port; version 3 is only served in blocking mode.
+   * With the --non-blocking argument, the server serves its clients with a few
+   * event loop threads instead of one thread per connection. In blocking mode,
+   * --workers=N serves at most N sessions concurrently with a pool of reusable
+   * threads (--queue=M connections can wait for a thread) and --virtual-threads
+   * serves every session on a virtual thread (Java 21 or later).
+   * --store=indexed|snapshot|linked|mapped selects the data store
+   * implementation (mapped serves the roster file given with --roster=FILE,
+   * e.g. a snapshot, from a read-only memory mapping shared with the other
+   * processes of the host) and
+   * --random-seed=S makes the sequence of random picks reproducible.
+   * --load-mode=chunked makes the students of a LOAD visible chunk by chunk,
+   * with a bounded buffer, instead of all at once at the end (all-or-nothing,
+   * the default), and --load-chunk=N sets the size of the chunks (which is
+   * also the interval of the progress reports of LOAD PROGRESS).
+   * --wal=FILE persists the store in a write-ahead log, replayed at startup.
+   * --snapshot=FILE saves the store to a binary roster file every
+   * --snapshot-interval=S seconds (60 by default, 0 to only save it when the
+   * server is stopped) and restores it at startup.
+   * --import=FILE loads a roster file of the host before the server starts,
+   * and --import-dir=DIR lets the clients load the files of a directory with
+   * the IMPORT command (--protocol=2 only, in blocking mode).
+   * The log records of the application go through a ring buffer of
+   * --log-buffer=N records (8192 by default, 0 to log synchronously) and are
+   * written to the console by a background thread.
    * 
    * @param args the command line arguments
    * @throws java.io.IOException
    */
   public static void main(String[] args) throws IOException {
     System.setProperty("java.util.logging.SimpleFormatter.format", "%5$s %n");
-    RouletteServer server = new RouletteServer(RouletteV1Protocol.DEFAULT_PORT, RouletteV1Protocol.VERSION);
+    ServerMode mode = ServerMode.BLOCKING;
+    String protocolVersion = RouletteV1Protocol.VERSION;
+    int port = RouletteV1Protocol.DEFAULT_PORT;
+    int workers = 0;
+    int queue = 1000;
+    boolean virtualThreads = false;
+    String storeType = "indexed";
+    IRandomSource randomSource = new ThreadLocalRandomSource();
+    int logBuffer = 8192;
+    ImportMode importMode = ImportMode.ALL_OR_NOTHING;
+    int importChunkSize = AbstractStudentsStore.DEFAULT_IMPORT_CHUNK_SIZE;
+    String importFile = null;
+    String importDirectory = null;
+    String walFile = null;
+    String rosterFile = null;
+    String snapshotFile = null;
+    long snapshotInterval = 60;
+    for (String arg : args) {
+      if ("--protocol=2".equals(arg)) {
+        protocolVersion = RouletteV2Protocol.VERSION;
+        port = RouletteV2Protocol.DEFAULT_PORT;
+      } else if ("--protocol=3".equals(arg)) {
+        protocolVersion = RouletteV3Protocol.VERSION;
+        port = RouletteV3Protocol.DEFAULT_PORT;
+      } else if ("--non-blocking".equals(arg)) {
+        mode = ServerMode.NON_BLOCKING;
+      } else if ("--virtual-threads".equals(arg)) {
+        virtualThreads = true;
+      } else if (arg.startsWith("--workers=")) {
+        workers = Integer.parseInt(arg.substring("--workers=".length()));
+      } else if (arg.startsWith("--queue=")) {
+        queue = Integer.parseInt(arg.substring("--queue=".length()));
+      } else if (arg.startsWith("--store=")) {
+        storeType = arg.substring("--store=".length());
+      } else if (arg.startsWith("--random-seed=")) {
+        randomSource = new SeededRandomSource(Long.parseLong(arg.substring("--random-seed=".length())));
+      } else if (arg.startsWith("--log-buffer=")) {
+        logBuffer = Integer.parseInt(arg.substring("--log-buffer=".length()));
+      } else if ("--load-mode=chunked".equals(arg)) {
+        importMode = ImportMode.CHUNK_VISIBLE;
+      } else if ("--load-mode=all-or-nothing".equals(arg)) {
+        importMode = ImportMode.ALL_OR_NOTHING;
+      } else if (arg.startsWith("--load-chunk=")) {
+        importChunkSize = Integer.parseInt(arg.substring("--load-chunk=".length()));
+      } else if (arg.startsWith("--import=")) {
+        importFile = arg.substring("--import=".length());
+      } else if (arg.startsWith("--roster=")) {
+        rosterFile = arg.substring("--roster=".length());
+      } else if (arg.startsWith("--wal=")) {
+        walFile = arg.substring("--wal=".length());
+      } else if (arg.startsWith("--snapshot=")) {
+        snapshotFile = arg.substring("--snapshot=".length());
+      } else if (arg.startsWith("--snapshot-interval=")) {
+        snapshotInterval = Long.parseLong(arg.substring("--snapshot-interval=".length()));
+        if (snapshotInterval < 0) {
+          throw new IllegalArgumentException("--snapshot-interval cannot be negative");
+        }
+      } else if (arg.startsWith("--import-dir=")) {
+        importDirectory = arg.substring("--import-dir=".length());
+      }
+    }
+    if (logBuffer > 0) {
+      RingBufferLogHandler.install(APPLICATION_LOGGER, new ConsoleHandler(), logBuffer);
+    }
+    RouletteServer server = new RouletteServer(port, protocolVersion, mode);
+    AbstractStudentsStore store;
+    switch (storeType) {
+      case "snapshot":
+        store = new SnapshotStudentsStoreImpl(randomSource);
+        break;
+      case "linked":
+        store = new StudentsStoreImpl(randomSource);
+        break;
+      case "mapped":
+        if (rosterFile == null) {
+          throw new IllegalArgumentException("--store=mapped requires --roster=FILE");
+        }
+        store = new MappedRosterStudentsStoreImpl(Paths.get(rosterFile), randomSource);
+        break;
+      default:
+        store = new IndexedStudentsStoreImpl(randomSource);
+        break;
+    }
+    if (walFile != null) {
+      store = new WriteAheadLogStudentsStore(store, Paths.get(walFile));
+    }
+    store.setImportMode(importMode);
+    store.setImportChunkSize(importChunkSize);
+    server.setStore(store);
+    if (snapshotFile != null) {
+      server.setSnapshotFile(Paths.get(snapshotFile), snapshotInterval);
+    }
+    if (importDirectory != null) {
+      if (!RouletteV2Protocol.VERSION.equals(protocolVersion)) {
+        throw new IllegalArgumentException("--import-dir requires --protocol=2 (IMPORT is a command of the version 2)");
+      }
+      if (mode == ServerMode.NON_BLOCKING) {
+        throw new IllegalArgumentException("--import-dir cannot be used with --non-blocking (IMPORT is only served in blocking mode)");
+      }
+      server.setImportDirectory(Paths.get(importDirectory));
+    }
+    if (virtualThreads) {
+      try {
+        server.setWorkerExecutor(ClientWorkerExecutors.newVirtualThreadPerConnection());
+      } catch (UnsupportedOperationException ex) {
+        Logger.getLogger(QuizRouletteServer.class.getName()).log(Level.WARNING, "{0}: serving each session on a new platform thread instead", ex.getMessage());
+      }
+    } else if (workers > 0) {
+      server.setWorkerExecutor(ClientWorkerExecutors.newBoundedPool(workers, queue));
+    }
     try {
+      if (importFile != null) {
+        server.importFile(Paths.get(importFile));
+      }
       server.startServer();
     } catch (IOException ex) {
       Logger.getLogger(QuizRouletteServer.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
@@ -0,0 +1,286 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import ch.heigvd.res.labs.roulette.logging.SampledLogger;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV1Protocol;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A base class for the implementations of the IStudentStore contract. It
+ * implements the import of data sent by clients (which is the same whatever the
+ * data structure used to keep the students) on top of the bulk addStudents()
+ * operation, and holds the source of randomness used to pick students.
+ */
+public abstract class AbstractStudentsStore implements IStudentsStore {
+
+  static final Logger LOG = Logger.getLogger(AbstractStudentsStore.class.getName());
+
+  /*
+   * A LOAD can send millions of students: only a few of them are logged
+   */
+  static final SampledLogger IMPORT_LOG = new SampledLogger(LOG, "import", 1, 10);
+
+  /*
+   * The number of changes kept in the change log
+   */
+  static final int CHANGE_LOG_SIZE = 4096;
+
+  /*
+   * The default number of students between two progress reports of an import
+   */
+  public static final int DEFAULT_IMPORT_CHUNK_SIZE = 10000;
+
+  protected final IRandomSource randomSource;
+
+  private final AtomicLong version = new AtomicLong();
+
+  /*
+   * The change log. Students are only appended to the store (until the next
+   * clear), so a change is fully described by the number of students after it:
+   * the students added since a version are the ones after the number of
+   * students at that version. The log is a ring indexed by version, holding the
+   * versions since the last clear (at most CHANGE_LOG_SIZE of them). It is only
+   * written while the writers are excluded. The readers which do not exclude
+   * the writers check changeLogHead after having read a slot: the writer which
+   * reuses a slot announces it there first.
+   */
+  private final AtomicIntegerArray numberOfStudentsAfterChange = new AtomicIntegerArray(CHANGE_LOG_SIZE);
+  private volatile long changeLogHead = 0;
+  private long oldestLoggedVersion = 0;
+
+  /*
+   * The version of the last clear (the epoch of the pages, see StudentsPage)
+   */
+  private long clearVersion = 0;
+
+  /*
+   * How the imports (e.g. LOAD commands) add their students to the store
+   */
+  private volatile ImportMode importMode = ImportMode.ALL_OR_NOTHING;
+  private volatile int importChunkSize = DEFAULT_IMPORT_CHUNK_SIZE;
+
+  protected AbstractStudentsStore() {
+    this(new ThreadLocalRandomSource());
+  }
+
+  /**
+   * @param randomSource where the store gets random numbers from (e.g. a
+   * SeededRandomSource to replay the same sequence of picks)
+   */
+  protected AbstractStudentsStore(IRandomSource randomSource) {
+    this.randomSource = randomSource;
+  }
+
+  /**
+   * Selects when the students of the next imports become visible. In
+   * CHUNK_VISIBLE mode, every chunk is a separate change of the store: prefer
+   * large chunks with the stores which copy their content on every change
+   * (e.g. SnapshotStudentsStoreImpl).
+   *
+   * @param importMode ALL_OR_NOTHING (the default) or CHUNK_VISIBLE
+   */
+  public void setImportMode(ImportMode importMode) {
+    this.importMode = importMode;
+  }
+
+  public ImportMode getImportMode() {
+    return importMode;
+  }
+
+  /**
+   * @param importChunkSize the number of students between two progress reports
+   * of the next imports, and between two additions to the store in
+   * CHUNK_VISIBLE mode
+   */
+  public void setImportChunkSize(int importChunkSize) {
+    if (importChunkSize <= 0) {
+      throw new IllegalArgumentException("The chunk size must be positive: " + importChunkSize);
+    }
+    this.importChunkSize = importChunkSize;
+  }
+
+  public int getImportChunkSize() {
+    return importChunkSize;
+  }
+
+  @Override
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Must be called by the subclasses after having appended students to the
+   * store (once they are visible to the readers), before releasing the lock
+   * which excludes the other writers. The subclasses which publish their
+   * content together with its version (and override getVersion()) call it
+   * just before publishing the new content instead.
+   *
+   * @param numberOfStudents the number of students in the store, including
+   * the new ones
+   */
+  protected void studentsAdded(int numberOfStudents) {
+    long next = version.get() + 1;
+    changeLogHead = next;
+    numberOfStudentsAfterChange.set((int) (next % CHANGE_LOG_SIZE), numberOfStudents);
+    if (next - oldestLoggedVersion >= CHANGE_LOG_SIZE) {
+      oldestLoggedVersion = next - CHANGE_LOG_SIZE + 1;
+    }
+    version.set(next);
+  }
+
+  /**
+   * Must be called by the subclasses after having cleared the store (once the
+   * change is visible to the readers), before releasing the lock which
+   * excludes the other writers. Like studentsAdded(), it is called just before
+   * publishing the new content by the subclasses which publish it together
+   * with its version.
+   */
+  protected void storeCleared() {
+    long next = version.get() + 1;
+    changeLogHead = next;
+    numberOfStudentsAfterChange.set((int) (next % CHANGE_LOG_SIZE), 0);
+    oldestLoggedVersion = next;
+    clearVersion = next;
+    version.set(next);
+  }
+
+  /**
+   * Looks up the change log. Must be called while the writers are excluded.
+   *
+   * @param version a version of the store
+   * @return the number of students in the store at this version, or -1 if the
+   * version is not in the change log (too old, before the last clear, or
+   * unknown)
+   */
+  protected int numberOfStudentsAt(long version) {
+    return numberOfStudentsAt(version, oldestLoggedVersion, this.version.get());
+  }
+
+  /**
+   * Looks up the change log without excluding the writers, for the subclasses
+   * which publish their content together with its version: the bounds are the
+   * ones of the published content (read by the writer which published it,
+   * after its call to studentsAdded() or storeCleared()).
+   *
+   * @param version a version of the store
+   * @param oldestLoggedVersion the oldest version in the change log when the
+   * content was published (see getOldestLoggedVersion())
+   * @param currentVersion the version of the published content
+   * @return the number of students in the store at this version, or -1 if the
+   * version is not in the change log (too old, before the last clear, unknown,
+   * or overwritten by the writers since the content was published)
+   */
+  protected int numberOfStudentsAt(long version, long oldestLoggedVersion, long currentVersion) {
+    if (version < oldestLoggedVersion || version > currentVersion) {
+      return -1;
+    }
+    int numberOfStudents = numberOfStudentsAfterChange.get((int) (version % CHANGE_LOG_SIZE));
+    if (changeLogHead - version >= CHANGE_LOG_SIZE) {
+      // the slot has been reused by a later change
+      return -1;
+    }
+    return numberOfStudents;
+  }
+
+  /**
+   * Must be called while the writers are excluded.
+   *
+   * @return the oldest version in the change log
+   */
+  protected long getOldestLoggedVersion() {
+    return oldestLoggedVersion;
+  }
+
+  /**
+   * Must be called while the writers are excluded.
+   *
+   * @return the version of the last clear of the store
+   */
+  protected long getClearVersion() {
+    return clearVersion;
+  }
+
+  /**
+   * Builds a page of students.
+   *
+   * @param epoch the version of the last clear of the store
+   * @param students the current content of the store (not modified)
+   * @param offset the position of the first student of the page
+   * @param limit the maximum number of students of the page
+   * @return a copy of the students of the page
+   */
+  protected static StudentsPage page(long epoch, List<Student> students, int offset, int limit) {
+    int from = Math.min(Math.max(offset, 0), students.size());
+    int to = (int) Math.min((long) from + limit, students.size());
+    return new StudentsPage(epoch, from, new ArrayList<>(students.subList(from, to)), to == students.size());
+  }
+
+  /**
+   * Builds the changes between a version and the current content of the store.
+   *
+   * @param currentVersion the current version of the store
+   * @param numberOfStudentsAtVersion the number of students at the version the
+   * changes are computed from (see numberOfStudentsAt()), -1 if unknown
+   * @param students the current content of the store (not modified)
+   * @return the students added since the version, or all the students if the
+   * version is unknown
+   */
+  protected static StudentsChanges changes(long currentVersion, int numberOfStudentsAtVersion, List<Student> students) {
+    if (numberOfStudentsAtVersion < 0) {
+      return new StudentsChanges(currentVersion, true, new ArrayList<>(students));
+    }
+    return new StudentsChanges(currentVersion, false, new ArrayList<>(students.subList(numberOfStudentsAtVersion, students.size())));
+  }
+
+  @Override
+  public StudentsImport beginImport(int expectedNumberOfStudents, IImportProgressListener listener) {
+    return new StudentsImport(this, importMode, importChunkSize, expectedNumberOfStudents, listener);
+  }
+
+  @Override
+  public int importData(BufferedReader reader, int numberOfStudents) throws IOException {
+    StudentsImport studentsImport = beginImport(numberOfStudents, null);
+    for (int i = 0; i < numberOfStudents; i++) {
+      String record = reader.readLine();
+      if (record == null) {
+        throw new IOException("End of stream after " + i + " of " + numberOfStudents + " students");
+      }
+      studentsImport.addStudent(new Student(record));
+    }
+    studentsImport.finish();
+    LOG.log(Level.INFO, "{0} students have been imported.", numberOfStudents);
+    return numberOfStudents;
+  }
+
+  @Override
+  public int importData(BufferedReader reader) throws IOException {
+    return importData(reader, null);
+  }
+
+  @Override
+  public int importData(BufferedReader reader, IImportProgressListener listener) throws IOException {
+    LOG.log(Level.INFO, "Importing data from input reader of type {0}", reader.getClass());
+    StudentsImport studentsImport = beginImport(-1, listener);
+    String record;
+    boolean endReached = false;
+    while (!endReached && (record = reader.readLine()) != null) {
+      if (record.equalsIgnoreCase(RouletteV1Protocol.CMD_LOAD_ENDOFDATA_MARKER)) {
+        LOG.log(Level.INFO, "End of stream reached. New students have been added to the store. How many? We'll tell you when the lab is complete...");
+        endReached = true;
+      } else {
+        IMPORT_LOG.log(Level.INFO, "Adding student {0} to the store.", record);
+        studentsImport.addStudent(new Student(record));
+      }
+    }
+    int numberOfStudents = studentsImport.finish();
+    LOG.log(Level.INFO, "There are now {0} students in the store.", getNumberOfStudents());
+    return numberOfStudents;
+  }
+
+}
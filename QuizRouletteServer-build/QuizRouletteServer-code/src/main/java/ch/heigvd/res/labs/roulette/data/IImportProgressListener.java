@@ -0,0 +1,21 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.IOException;
+
+/**
+ * This interface is implemented by the classes which follow the progress of an
+ * import (e.g. to report it to the client sending the data).
+ */
+public interface IImportProgressListener {
+
+  /**
+   * This method is called after every chunk of an import (see StudentsImport),
+   * once the chunk has been added to the data store (CHUNK_VISIBLE mode) or
+   * buffered (ALL_OR_NOTHING mode).
+   *
+   * @param numberOfStudents the number of students imported so far
+   * @throws IOException if the progress cannot be reported (the import fails)
+   */
+  public void chunkImported(int numberOfStudents) throws IOException;
+
+}
@@ -0,0 +1,18 @@
+package ch.heigvd.res.labs.roulette.data;
+
+/**
+ * This interface defines the source of randomness used by the data stores to
+ * pick random students. It is called concurrently by all client sessions, so
+ * implementations must be thread-safe and should avoid shared mutable state.
+ */
+public interface IRandomSource {
+
+  /**
+   * Returns a pseudo-random index
+   *
+   * @param bound the upper bound (exclusive), must be positive
+   * @return an index between 0 (inclusive) and bound (exclusive)
+   */
+  public int nextIndex(int bound);
+
+}
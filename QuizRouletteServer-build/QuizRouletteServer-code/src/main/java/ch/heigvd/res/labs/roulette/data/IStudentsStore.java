@@ -24,6 +24,14 @@ public interface IStudentsStore {
    */
   public void addStudent(Student student);
 
+  /**
+   * This method is used to add several students to the data store, in a single
+   * operation (other clients see either none or all of them)
+   *
+   * @param students the students to add
+   */
+  public void addStudents(List<Student> students);
+
   /**
    * This method is used to get the list of students currently in the data store
    *
@@ -31,6 +39,26 @@ public interface IStudentsStore {
    */
   public List<Student> listStudents();
 
+  /**
+   * This method is used to go through the students currently in the data store
+   * without necessarily copying all of them at once (e.g. to stream a large
+   * roster to a client). The students are returned in insertion order and the
+   * iteration is not affected by later changes of the data store.
+   *
+   * @return the students currently in the data store
+   */
+  public Iterable<Student> snapshotStudents();
+
+  /**
+   * Same as snapshotStudents(), with the version of the data store the
+   * students come from, read atomically with them (e.g. to tag a response with
+   * the version of its content: reading getVersion() then snapshotStudents()
+   * may return students more recent than the version).
+   *
+   * @return the students currently in the data store and their version
+   */
+  public VersionedStudents versionedSnapshotStudents();
+
   /**
    * This method is used to randomly select one student in the data store
    *
@@ -46,14 +74,87 @@ public interface IStudentsStore {
    */
   public int getNumberOfStudents();
 
+  /**
+   * This method returns the version of the data store, which is incremented
+   * after every change of its content. Two calls returning the same version
+   * see the same students; data read after having read the version is at least
+   * as recent as this version.
+   *
+   * @return the current version of the data store
+   */
+  public long getVersion();
+
+  /**
+   * This method returns the changes of the data store since a version, taken
+   * from a bounded change log. If the version is too old to be in the change
+   * log, if the store has been cleared since then, or if the version is
+   * unknown (e.g. -1), it returns a full snapshot of the data store instead.
+   *
+   * @param version the version known by the caller
+   * @return the students added since the version (or all the students) and the
+   * current version of the data store
+   */
+  public StudentsChanges changesSince(long version);
+
+  /**
+   * This method is used to get some of the students currently in the data
+   * store, in insertion order. Students are only appended until the store is
+   * cleared: the epoch of the page tells whether a following page, read later
+   * at the next offset, continues the same roster.
+   *
+   * @param offset the position of the first student of the page
+   * @param limit the maximum number of students of the page
+   * @return the students at positions offset to offset + limit - 1 (fewer at the
+   * end of the store) and the epoch of the store
+   */
+  public StudentsPage pageOfStudents(int offset, int limit);
+
+  /**
+   * This method is used to start an import of students, which are then passed
+   * one by one to the returned StudentsImport. The data store decides how they
+   * are added (see ImportMode): all at once when the import is finished, or
+   * chunk by chunk.
+   *
+   * @param expectedNumberOfStudents the announced number of students (-1 if
+   * unknown)
+   * @param listener notified after every chunk of the import, may be null
+   * @return the import, to be finished by the caller
+   */
+  public StudentsImport beginImport(int expectedNumberOfStudents, IImportProgressListener listener);
+
   /**
    * This method is used to import students, by consuming lines from the
    * BufferedReader passed in argument. Data is read line by line and the whole
    * line is used as the student full name.
    *
    * @param reader where we read student data from
+   * @return the number of students added to the data store
    * @throws IOException
    */
-  public void importData(BufferedReader reader) throws IOException;
+  public int importData(BufferedReader reader) throws IOException;
+
+  /**
+   * This method is used to import students like importData(reader), reporting
+   * the progress of the import after every chunk.
+   *
+   * @param reader where we read student data from
+   * @param listener notified after every chunk of the import, may be null
+   * @return the number of students added to the data store
+   * @throws IOException
+   */
+  public int importData(BufferedReader reader, IImportProgressListener listener) throws IOException;
+
+  /**
+   * This method is used to import a known number of students, by consuming
+   * exactly this number of lines from the BufferedReader passed in argument
+   * (there is no end of data marker). Unless the students are added chunk by
+   * chunk (see ImportMode), nothing is added if the stream ends before.
+   *
+   * @param reader where we read student data from
+   * @param numberOfStudents the number of lines to read
+   * @return the number of students added to the data store
+   * @throws IOException if the stream ends before the announced number of lines
+   */
+  public int importData(BufferedReader reader, int numberOfStudents) throws IOException;
 
 }
@@ -0,0 +1,23 @@
+package ch.heigvd.res.labs.roulette.data;
+
+/**
+ * Defines when the students of an import (e.g. a LOAD command) become visible
+ * to the other clients.
+ */
+public enum ImportMode {
+
+  /**
+   * The students are buffered until the end of the import and added in a
+   * single operation: other clients see either none or all of them, and
+   * nothing is added if the import fails. The whole import is held in memory.
+   */
+  ALL_OR_NOTHING,
+
+  /**
+   * The students are added chunk by chunk as they are received: only one chunk
+   * is held in memory, other clients see the chunks as soon as they are
+   * added, and the chunks added before a failure stay in the store.
+   */
+  CHUNK_VISIBLE
+
+}
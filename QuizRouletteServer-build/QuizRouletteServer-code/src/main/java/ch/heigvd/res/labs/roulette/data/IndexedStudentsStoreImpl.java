@@ -0,0 +1,181 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory implementation of the IStudentStore contract, backed by an
+ * array. Picking a random student is a constant-time indexed access (instead
+ * of a walk through a linked list) and appending is amortized constant-time.
+ *
+ * A read-write lock protects the array: RANDOM, INFO and LIST can run in
+ * parallel, only LOAD and CLEAR need exclusive access.
+ */
+public class IndexedStudentsStoreImpl extends AbstractStudentsStore {
+
+  /*
+   * The number of students copied at once by the iterators of snapshotStudents()
+   */
+  private static final int SNAPSHOT_CHUNK_SIZE = 1024;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private ArrayList<Student> students = new ArrayList<>();
+
+  public IndexedStudentsStoreImpl() {
+  }
+
+  public IndexedStudentsStoreImpl(IRandomSource randomSource) {
+    super(randomSource);
+  }
+
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      // drop the whole array at once, rather than nulling every slot
+      students = new ArrayList<>();
+      storeCleared();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void addStudent(Student student) {
+    lock.writeLock().lock();
+    try {
+      students.add(student);
+      studentsAdded(students.size());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void addStudents(List<Student> studentsToAdd) {
+    lock.writeLock().lock();
+    try {
+      students.addAll(studentsToAdd);
+      studentsAdded(students.size());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public List<Student> listStudents() {
+    lock.readLock().lock();
+    try {
+      return new ArrayList<>(students);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The array is only appended to (CLEAR replaces it by a new one), so the
+   * first students of the array, up to its current size, form a stable
+   * snapshot. It is read in chunks, each one copied under the read lock: the
+   * memory used does not depend on the number of students and the lock is not
+   * held while the caller processes them.
+   */
+  @Override
+  public Iterable<Student> snapshotStudents() {
+    return versionedSnapshotStudents().getStudents();
+  }
+
+  @Override
+  public VersionedStudents versionedSnapshotStudents() {
+    final ArrayList<Student> snapshotList;
+    final int snapshotSize;
+    final long version;
+    lock.readLock().lock();
+    try {
+      snapshotList = students;
+      snapshotSize = students.size();
+      version = getVersion();
+    } finally {
+      lock.readLock().unlock();
+    }
+    return new VersionedStudents(version, () -> new Iterator<Student>() {
+      private final Student[] chunk = new Student[Math.min(SNAPSHOT_CHUNK_SIZE, snapshotSize)];
+      private int chunkStart = 0;
+      private int chunkLength = 0;
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < snapshotSize;
+      }
+
+      @Override
+      public Student next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        if (next == chunkStart + chunkLength) {
+          chunkStart = next;
+          chunkLength = Math.min(chunk.length, snapshotSize - next);
+          lock.readLock().lock();
+          try {
+            for (int i = 0; i < chunkLength; i++) {
+              chunk[i] = snapshotList.get(chunkStart + i);
+            }
+          } finally {
+            lock.readLock().unlock();
+          }
+        }
+        return chunk[next++ - chunkStart];
+      }
+    });
+  }
+
+  @Override
+  public StudentsChanges changesSince(long version) {
+    lock.readLock().lock();
+    try {
+      return changes(getVersion(), numberOfStudentsAt(version), students);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public StudentsPage pageOfStudents(int offset, int limit) {
+    lock.readLock().lock();
+    try {
+      return page(getClearVersion(), students, offset, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Student pickRandomStudent() throws EmptyStoreException {
+    lock.readLock().lock();
+    try {
+      if (students.isEmpty()) {
+        throw new EmptyStoreException();
+      }
+      return students.get(randomSource.nextIndex(students.size()));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int getNumberOfStudents() {
+    lock.readLock().lock();
+    try {
+      return students.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+}
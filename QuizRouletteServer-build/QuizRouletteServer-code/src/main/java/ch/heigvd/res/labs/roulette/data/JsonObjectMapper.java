@@ -1,8 +1,10 @@
 package ch.heigvd.res.labs.roulette.data;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.io.Writer;
 
 /**
  * This class provides utility methods to convert Plain Old Java Objects (POJOs)
@@ -39,4 +41,45 @@ public class JsonObjectMapper {
     return objectMapper.writeValueAsString(o);
   }
 
+  /**
+   * Writes the json representation of a StudentsList containing the students,
+   * one student at a time: the students are not collected in a StudentsList
+   * and the document is not built as a string. The writer is flushed but not
+   * closed.
+   *
+   * @param students the students to serialize
+   * @param writer where the json representation is written
+   * @throws IOException
+   */
+  public static void writeStudentsList(Iterable<Student> students, Writer writer) throws IOException {
+    writeStudentsList(students, null, writer);
+  }
+
+  /**
+   * Writes the json representation of a StudentsList containing the students
+   * and the version of the store they come from, one student at a time.
+   *
+   * @param students the students to serialize
+   * @param version the version of the store, or null to leave it out
+   * @param writer where the json representation is written
+   * @throws IOException
+   */
+  public static void writeStudentsList(Iterable<Student> students, Long version, Writer writer) throws IOException {
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    generator.writeStartObject();
+    if (version != null) {
+      generator.writeNumberField("version", version);
+    }
+    generator.writeArrayFieldStart("students");
+    for (Student student : students) {
+      generator.writeStartObject();
+      generator.writeStringField("fullname", student.getFullname());
+      generator.writeEndObject();
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+    generator.close();
+  }
+
 }
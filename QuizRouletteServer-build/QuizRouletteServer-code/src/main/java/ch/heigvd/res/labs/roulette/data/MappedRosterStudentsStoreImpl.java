@@ -0,0 +1,211 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An implementation of the IStudentStore contract serving its students from a
+ * roster file (see RosterFile) mapped in memory, read-only. The names stay in
+ * the file: they are decoded when they are read (e.g. by RANDOM), and no heap
+ * object is kept per student. Several server processes mapping the same file
+ * share a single copy of the roster, in the page cache of the OS. The roster
+ * files are written by RosterFile.write(), e.g. as the snapshots of a server
+ * (see StudentsSnapshotter).
+ *
+ * The roster file is never modified. The students loaded afterwards are
+ * appended to an in-memory tail, like in SnapshotStudentsStoreImpl (readers
+ * take the current roster and its version without locking, writers publish a
+ * new one), and CLEAR drops the roster file.
+ */
+public class MappedRosterStudentsStoreImpl extends AbstractStudentsStore implements Closeable {
+
+  private static final Student[] EMPTY = new Student[0];
+
+  private final RosterFile rosterFile;
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+  /*
+   * Serializes the writers (readers never take it)
+   */
+  private final Object writeLock = new Object();
+
+  /**
+   * @param file the roster file to map
+   * @throws IOException if the file cannot be read or is not a roster file
+   */
+  public MappedRosterStudentsStoreImpl(Path file) throws IOException {
+    this(file, new ThreadLocalRandomSource());
+  }
+
+  /**
+   * @param file the roster file to map
+   * @param randomSource where the store gets random numbers from
+   * @throws IOException if the file cannot be read or is not a roster file
+   */
+  public MappedRosterStudentsStoreImpl(Path file, IRandomSource randomSource) throws IOException {
+    super(randomSource);
+    rosterFile = RosterFile.open(file);
+    if (rosterFile.size() > 0) {
+      // the students of the file are the first change of the store
+      studentsAdded(rosterFile.size());
+    }
+    publish(new Roster(rosterFile.asList(), EMPTY));
+  }
+
+  /*
+   * An immutable roster: the students of the file (or none once the store has
+   * been cleared), followed by the students loaded since
+   */
+  private static class Roster extends AbstractList<Student> implements RandomAccess {
+
+    private final List<Student> mapped;
+    private final Student[] loaded;
+
+    Roster(List<Student> mapped, Student[] loaded) {
+      this.mapped = mapped;
+      this.loaded = loaded;
+    }
+
+    @Override
+    public Student get(int i) {
+      int numberOfMapped = mapped.size();
+      return i < numberOfMapped ? mapped.get(i) : loaded[i - numberOfMapped];
+    }
+
+    @Override
+    public int size() {
+      return mapped.size() + loaded.length;
+    }
+
+    Roster append(List<Student> students) {
+      Student[] next = Arrays.copyOf(loaded, loaded.length + students.size());
+      int i = loaded.length;
+      for (Student student : students) {
+        next[i++] = student;
+      }
+      return new Roster(mapped, next);
+    }
+  }
+
+  /*
+   * An immutable snapshot of the store: the roster, its version, and the state
+   * of the change log at that version
+   */
+  private static class Snapshot {
+
+    private final Roster students;
+    private final long version;
+    private final long clearVersion;
+    private final long oldestLoggedVersion;
+
+    Snapshot(Roster students, long version, long clearVersion, long oldestLoggedVersion) {
+      this.students = students;
+      this.version = version;
+      this.clearVersion = clearVersion;
+      this.oldestLoggedVersion = oldestLoggedVersion;
+    }
+  }
+
+  /*
+   * Must be called by the writers, after studentsAdded() or storeCleared()
+   */
+  private void publish(Roster students) {
+    snapshot.set(new Snapshot(students, super.getVersion(), getClearVersion(), getOldestLoggedVersion()));
+  }
+
+  @Override
+  public void clear() {
+    synchronized (writeLock) {
+      storeCleared();
+      publish(new Roster(Collections.<Student>emptyList(), EMPTY));
+    }
+  }
+
+  @Override
+  public void addStudent(Student student) {
+    addStudents(Collections.singletonList(student));
+  }
+
+  @Override
+  public void addStudents(List<Student> studentsToAdd) {
+    if (studentsToAdd.isEmpty()) {
+      return;
+    }
+    synchronized (writeLock) {
+      Roster next = snapshot.get().students.append(studentsToAdd);
+      studentsAdded(next.size());
+      publish(next);
+    }
+  }
+
+  @Override
+  public long getVersion() {
+    // the version of the published roster, never ahead of it
+    return snapshot.get().version;
+  }
+
+  @Override
+  public List<Student> listStudents() {
+    return new ArrayList<>(snapshot.get().students);
+  }
+
+  @Override
+  public Iterable<Student> snapshotStudents() {
+    // a roster is never modified once published, so it can be iterated as is
+    return Collections.unmodifiableList(snapshot.get().students);
+  }
+
+  @Override
+  public VersionedStudents versionedSnapshotStudents() {
+    Snapshot current = snapshot.get();
+    return new VersionedStudents(current.version, Collections.unmodifiableList(current.students));
+  }
+
+  @Override
+  public StudentsChanges changesSince(long version) {
+    Snapshot current = snapshot.get();
+    int numberOfStudentsAtVersion = numberOfStudentsAt(version, current.oldestLoggedVersion, current.version);
+    return changes(current.version, numberOfStudentsAtVersion, current.students);
+  }
+
+  @Override
+  public StudentsPage pageOfStudents(int offset, int limit) {
+    Snapshot current = snapshot.get();
+    return page(current.clearVersion, current.students, offset, limit);
+  }
+
+  @Override
+  public Student pickRandomStudent() throws EmptyStoreException {
+    Roster students = snapshot.get().students;
+    int size = students.size();
+    if (size == 0) {
+      throw new EmptyStoreException();
+    }
+    return students.get(randomSource.nextIndex(size));
+  }
+
+  @Override
+  public int getNumberOfStudents() {
+    return snapshot.get().students.size();
+  }
+
+  /**
+   * Closes the roster file. The store must not be used afterwards.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    rosterFile.close();
+  }
+
+}
@@ -0,0 +1,214 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact binary file holding a roster, read through memory mappings.
+ *
+ * The file starts with a header (magic number, format version, number of
+ * students, position of the index), followed by the full names of the
+ * students, each one encoded in UTF-8 and prefixed by its length, and by the
+ * index: the position of every name in the file. Any name can thus be read in
+ * constant time, without reading the others.
+ *
+ * The file is mapped in regions of REGION_SIZE bytes, each one overlapping the
+ * next one by MAX_NAME_LENGTH bytes, so that every name can be read from a
+ * single region.
+ */
+public class RosterFile implements Closeable {
+
+  static final int MAGIC = 0x524F5354;
+  static final int FORMAT_VERSION = 1;
+  static final int HEADER_SIZE = 24;
+
+  /*
+   * The longest name which can be stored, in bytes
+   */
+  public static final int MAX_NAME_LENGTH = 1 << 20;
+
+  static final long REGION_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+  private final int size;
+  private final LongBuffer index;
+  private final MappedByteBuffer[] regions;
+
+  private RosterFile(FileChannel channel) throws IOException {
+    this.channel = channel;
+    long fileSize = channel.size();
+    if (fileSize < HEADER_SIZE) {
+      throw new IOException("Not a roster file (too short)");
+    }
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+    if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+      throw new IOException("Not a roster file, or unsupported format version");
+    }
+    size = header.getInt(8);
+    long indexPosition = header.getLong(16);
+    if (size < 0 || indexPosition < HEADER_SIZE || indexPosition + 8L * size != fileSize || 8L * size > Integer.MAX_VALUE) {
+      throw new IOException("Corrupted roster file header");
+    }
+    index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition, 8L * size).asLongBuffer();
+    regions = new MappedByteBuffer[(int) ((indexPosition + REGION_SIZE - 1) / REGION_SIZE)];
+    for (int i = 0; i < regions.length; i++) {
+      long start = i * REGION_SIZE;
+      regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE + MAX_NAME_LENGTH + 4, indexPosition - start));
+    }
+  }
+
+  /**
+   * Opens and maps a roster file. The file must not be modified while it is
+   * open (roster files are replaced, see write()).
+   *
+   * @param file the roster file
+   * @return the roster, ready to be read
+   * @throws IOException if the file cannot be read or is not a roster file
+   */
+  public static RosterFile open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      return new RosterFile(channel);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * @return the number of students of the roster
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Reads the full name of a student of the roster (thread-safe).
+   *
+   * @param i the position of the student in the roster
+   * @return the full name of the student
+   */
+  public String getFullname(int i) {
+    long position = index.get(i);
+    ByteBuffer region = regions[(int) (position / REGION_SIZE)];
+    int offset = (int) (position % REGION_SIZE);
+    int length = region.getInt(offset);
+    byte[] name = new byte[length];
+    region.get(offset + 4, name, 0, length);
+    return new String(name, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the students of the roster, read lazily (every access decodes the
+   * name of the student again)
+   */
+  public List<Student> asList() {
+    return new AbstractList<Student>() {
+      @Override
+      public Student get(int i) {
+        return new Student(getFullname(i));
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Closes the file. The mappings stay valid until they are garbage collected,
+   * but the roster must not be read afterwards.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Writes a roster file. The roster is first written to a temporary file of
+   * the same directory, which then replaces the file in a single atomic move:
+   * readers see either the previous or the new roster, and a crash while the
+   * roster is written does not damage the previous one. The students are read
+   * once, in order, so they can come from a snapshot iteration of a store.
+   *
+   * @param students the students of the roster
+   * @param file the roster file
+   * @return the number of students written
+   * @throws IOException if the file cannot be written, or if a name is longer
+   * than MAX_NAME_LENGTH bytes
+   */
+  public static int write(Iterable<Student> students, Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      int count = 0;
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel.position(HEADER_SIZE)), 64 * 1024));
+        long[] positions = new long[1024];
+        long position = HEADER_SIZE;
+        for (Student student : students) {
+          byte[] name = student.getFullname().getBytes(StandardCharsets.UTF_8);
+          if (name.length > MAX_NAME_LENGTH) {
+            throw new IOException("Name too long for a roster file: " + name.length + " bytes");
+          }
+          if (count == positions.length) {
+            positions = Arrays.copyOf(positions, 2 * count);
+          }
+          positions[count++] = position;
+          out.writeInt(name.length);
+          out.write(name);
+          position += 4 + name.length;
+        }
+        for (int i = 0; i < count; i++) {
+          out.writeLong(positions[i]);
+        }
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(count).putInt(0).putLong(position);
+        header.flip();
+        while (header.hasRemaining()) {
+          channel.write(header, header.position());
+        }
+        channel.force(true);
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return count;
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Reads all the students of a roster file.
+   *
+   * @param file the roster file
+   * @return the students of the roster
+   * @throws IOException if the file cannot be read or is not a roster file
+   */
+  public static List<Student> readStudents(Path file) throws IOException {
+    try (RosterFile roster = open(file)) {
+      return new ArrayList<>(roster.asList());
+    }
+  }
+
+}
@@ -0,0 +1,39 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A deterministic random source: two sources created with the same seed produce
+ * the same sequence of indexes, which makes it possible for load tests and
+ * benchmarks to replay the exact same picks.
+ *
+ * The n-th value of the sequence is derived from seed + n * GAMMA with the
+ * SplitMix64 mixing function (the algorithm of java.util.SplittableRandom).
+ * Advancing the sequence is a single atomic add, so the source can be shared
+ * by all threads without locking. With concurrent callers, the sequence is
+ * still the same, but which thread gets which value depends on scheduling.
+ */
+public class SeededRandomSource implements IRandomSource {
+
+  private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+  private final AtomicLong state;
+
+  public SeededRandomSource(long seed) {
+    this.state = new AtomicLong(seed);
+  }
+
+  @Override
+  public int nextIndex(int bound) {
+    if (bound <= 0) {
+      throw new IllegalArgumentException("bound must be positive");
+    }
+    long z = state.addAndGet(GAMMA);
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    z = z ^ (z >>> 31);
+    // scale the 32 high bits to [0, bound) with a multiplication (no modulo bias worth mentioning)
+    return (int) (((z >>> 32) * bound) >>> 32);
+  }
+
+}
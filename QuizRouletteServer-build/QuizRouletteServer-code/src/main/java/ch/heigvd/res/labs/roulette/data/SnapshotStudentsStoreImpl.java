@@ -0,0 +1,151 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An in-memory implementation of the IStudentStore contract, designed for
+ * read-mostly workloads (RANDOM, INFO and LIST are far more frequent than LOAD
+ * and CLEAR).
+ *
+ * The students are kept in an immutable array, published through an atomic
+ * reference together with its version. Readers simply take the current
+ * snapshot: they never lock and never wait, even while a large LOAD is being
+ * committed, and always see an array with its own version. Writers build a new
+ * array (copy-on-write) and swap it in; they are serialized among themselves so
+ * that concurrent LOADs do not lose each other's students.
+ */
+public class SnapshotStudentsStoreImpl extends AbstractStudentsStore {
+
+  private static final Student[] EMPTY = new Student[0];
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(EMPTY, 0, 0, 0));
+
+  /*
+   * Serializes the writers (readers never take it)
+   */
+  private final Object writeLock = new Object();
+
+  public SnapshotStudentsStoreImpl() {
+  }
+
+  public SnapshotStudentsStoreImpl(IRandomSource randomSource) {
+    super(randomSource);
+  }
+
+  /*
+   * An immutable snapshot of the store: the students, their version, and the
+   * state of the change log at that version
+   */
+  private static class Snapshot {
+
+    private final Student[] students;
+    private final long version;
+    private final long clearVersion;
+    private final long oldestLoggedVersion;
+
+    Snapshot(Student[] students, long version, long clearVersion, long oldestLoggedVersion) {
+      this.students = students;
+      this.version = version;
+      this.clearVersion = clearVersion;
+      this.oldestLoggedVersion = oldestLoggedVersion;
+    }
+  }
+
+  /*
+   * Must be called by the writers, after studentsAdded() or storeCleared()
+   */
+  private void publish(Student[] students) {
+    snapshot.set(new Snapshot(students, super.getVersion(), getClearVersion(), getOldestLoggedVersion()));
+  }
+
+  @Override
+  public void clear() {
+    synchronized (writeLock) {
+      storeCleared();
+      publish(EMPTY);
+    }
+  }
+
+  @Override
+  public void addStudent(Student student) {
+    synchronized (writeLock) {
+      Student[] current = snapshot.get().students;
+      Student[] next = Arrays.copyOf(current, current.length + 1);
+      next[current.length] = student;
+      studentsAdded(next.length);
+      publish(next);
+    }
+  }
+
+  @Override
+  public void addStudents(List<Student> studentsToAdd) {
+    if (studentsToAdd.isEmpty()) {
+      return;
+    }
+    synchronized (writeLock) {
+      Student[] current = snapshot.get().students;
+      Student[] next = Arrays.copyOf(current, current.length + studentsToAdd.size());
+      int i = current.length;
+      for (Student student : studentsToAdd) {
+        next[i++] = student;
+      }
+      studentsAdded(next.length);
+      publish(next);
+    }
+  }
+
+  @Override
+  public long getVersion() {
+    // the version of the published students, never ahead of them
+    return snapshot.get().version;
+  }
+
+  @Override
+  public List<Student> listStudents() {
+    return new ArrayList<>(Arrays.asList(snapshot.get().students));
+  }
+
+  @Override
+  public Iterable<Student> snapshotStudents() {
+    // the array is never modified once published, so it can be iterated as is
+    return Collections.unmodifiableList(Arrays.asList(snapshot.get().students));
+  }
+
+  @Override
+  public VersionedStudents versionedSnapshotStudents() {
+    Snapshot current = snapshot.get();
+    return new VersionedStudents(current.version, Collections.unmodifiableList(Arrays.asList(current.students)));
+  }
+
+  @Override
+  public StudentsChanges changesSince(long version) {
+    Snapshot current = snapshot.get();
+    int numberOfStudentsAtVersion = numberOfStudentsAt(version, current.oldestLoggedVersion, current.version);
+    return changes(current.version, numberOfStudentsAtVersion, Arrays.asList(current.students));
+  }
+
+  @Override
+  public StudentsPage pageOfStudents(int offset, int limit) {
+    Snapshot current = snapshot.get();
+    return page(current.clearVersion, Arrays.asList(current.students), offset, limit);
+  }
+
+  @Override
+  public Student pickRandomStudent() throws EmptyStoreException {
+    Student[] students = snapshot.get().students;
+    if (students.length == 0) {
+      throw new EmptyStoreException();
+    }
+    return students[randomSource.nextIndex(students.length)];
+  }
+
+  @Override
+  public int getNumberOfStudents() {
+    return snapshot.get().students.length;
+  }
+
+}
@@ -0,0 +1,52 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents the changes of a data store since a given version (see
+ * IStudentsStore.changesSince()), and is used to serialize/deserialize the
+ * response to LIST SINCE. Either the students added since the version are
+ * listed, or (if fullSnapshot is true) all the students of the store, which
+ * replace the ones known by the client.
+ */
+public class StudentsChanges {
+
+  private long version;
+  private boolean fullSnapshot;
+  private List<Student> students = new ArrayList<>();
+
+  public StudentsChanges() {
+  }
+
+  public StudentsChanges(long version, boolean fullSnapshot, List<Student> students) {
+    this.version = version;
+    this.fullSnapshot = fullSnapshot;
+    this.students = students;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
+  public boolean isFullSnapshot() {
+    return fullSnapshot;
+  }
+
+  public void setFullSnapshot(boolean fullSnapshot) {
+    this.fullSnapshot = fullSnapshot;
+  }
+
+  public List<Student> getStudents() {
+    return students;
+  }
+
+  public void setStudents(List<Student> students) {
+    this.students = students;
+  }
+
+}
@@ -0,0 +1,224 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Imports a roster file of the server host (e.g. data/RES.csv: one full name per
+ * line, encoded in UTF-8) into a data store, much faster than sending it with
+ * LOAD: the file is memory-mapped, split on line boundaries into segments, and
+ * the segments are decoded in parallel by a ForkJoinPool. The students are then
+ * added to the store in a single operation, in the order of the file.
+ *
+ * Empty lines are ignored, as well as the carriage returns of files with
+ * Windows line endings and a leading byte order mark.
+ */
+public class StudentsFileImporter {
+
+  static final Logger LOG = Logger.getLogger(StudentsFileImporter.class.getName());
+
+  /*
+   * Segments are not made smaller than this (splitting a small file is not
+   * worth it) nor larger than MAX_SEGMENT_SIZE (a segment is mapped at once, and
+   * a mapping is at most 2 GB)
+   */
+  static final int MIN_SEGMENT_SIZE = 1 << 20;
+  static final int MAX_SEGMENT_SIZE = 1 << 28;
+
+  /*
+   * The number of segments per worker thread, so that the threads which are
+   * done early can steal the remaining segments
+   */
+  private static final int SEGMENTS_PER_THREAD = 4;
+
+  private final ForkJoinPool pool;
+
+  public StudentsFileImporter() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param pool the threads decoding the segments of the file
+   */
+  public StudentsFileImporter(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Reads a roster file and adds its students to a data store, in a single
+   * operation (other clients see either none or all of them).
+   *
+   * @param store where the students are added
+   * @param file the roster file
+   * @return the number of students added to the data store
+   * @throws IOException if the file cannot be read
+   */
+  public int importFile(IStudentsStore store, Path file) throws IOException {
+    long startTime = System.nanoTime();
+    List<Student> students = readStudents(file);
+    store.addStudents(students);
+    LOG.log(Level.INFO, "{0} students imported from {1} in {2} ms", new Object[]{students.size(), file, (System.nanoTime() - startTime) / 1000000});
+    return students.size();
+  }
+
+  /**
+   * Reads the students of a roster file.
+   *
+   * @param file the roster file
+   * @return the students, in the order of the file
+   * @throws IOException if the file cannot be read
+   */
+  public List<Student> readStudents(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long[] boundaries = splitOnLines(channel);
+      @SuppressWarnings({"unchecked", "rawtypes"})
+      List<Student>[] segments = new List[boundaries.length - 1];
+      pool.invoke(new DecodeSegments(channel, boundaries, segments, 0, segments.length));
+
+      int numberOfStudents = 0;
+      for (List<Student> segment : segments) {
+        numberOfStudents += segment.size();
+      }
+      List<Student> students = new ArrayList<>(numberOfStudents);
+      for (List<Student> segment : segments) {
+        students.addAll(segment);
+      }
+      return students;
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  /*
+   * Computes the boundaries of the segments: every segment but the first starts
+   * right after a line feed
+   */
+  private long[] splitOnLines(FileChannel channel) throws IOException {
+    long size = channel.size();
+    long targetSize = size / Math.max(1, pool.getParallelism() * SEGMENTS_PER_THREAD);
+    targetSize = Math.max(MIN_SEGMENT_SIZE, Math.min(targetSize, MAX_SEGMENT_SIZE));
+
+    List<Long> boundaries = new ArrayList<>();
+    boundaries.add(0L);
+    long start = 0;
+    while (size - start > targetSize) {
+      long end = nextLineStart(channel, start + targetSize, size);
+      if (end - start > Integer.MAX_VALUE) {
+        throw new IOException("Line too long at offset " + start);
+      }
+      boundaries.add(end);
+      start = end;
+    }
+    if (start < size) {
+      boundaries.add(size);
+    }
+    long[] result = new long[boundaries.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = boundaries.get(i);
+    }
+    return result;
+  }
+
+  /*
+   * Finds the first position after a line feed, from a position of the file
+   * (or the end of the file)
+   */
+  private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+    while (position < size) {
+      int length = (int) Math.min(64 * 1024, size - position);
+      MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      for (int i = 0; i < length; i++) {
+        if (window.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += length;
+    }
+    return size;
+  }
+
+  /*
+   * Decodes the lines of a segment of the file
+   */
+  private static List<Student> decodeSegment(FileChannel channel, long start, long end) throws IOException {
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    int limit = buffer.limit();
+    List<Student> students = new ArrayList<>();
+    byte[] line = new byte[256];
+    int position = 0;
+    if (start == 0 && limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+      position = 3;
+    }
+    while (position < limit) {
+      int lineEnd = position;
+      while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      int length = lineEnd - position;
+      if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+        length--;
+      }
+      if (length > 0) {
+        if (length > line.length) {
+          line = new byte[Math.max(length, 2 * line.length)];
+        }
+        buffer.get(position, line, 0, length);
+        students.add(new Student(new String(line, 0, length, StandardCharsets.UTF_8)));
+      }
+      position = lineEnd + 1;
+    }
+    return students;
+  }
+
+  /*
+   * Decodes a range of segments, splitting the range in two until there is a
+   * single segment left
+   */
+  private static class DecodeSegments extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long[] boundaries;
+    private final List<Student>[] segments;
+    private final int from;
+    private final int to;
+
+    DecodeSegments(FileChannel channel, long[] boundaries, List<Student>[] segments, int from, int to) {
+      this.channel = channel;
+      this.boundaries = boundaries;
+      this.segments = segments;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= 1) {
+        if (from < to) {
+          try {
+            segments[from] = decodeSegment(channel, boundaries[from], boundaries[from + 1]);
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new DecodeSegments(channel, boundaries, segments, from, middle),
+        new DecodeSegments(channel, boundaries, segments, middle, to));
+    }
+  }
+
+}
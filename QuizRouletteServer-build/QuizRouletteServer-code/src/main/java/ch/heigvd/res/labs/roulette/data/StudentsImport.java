@@ -0,0 +1,102 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An import of students into a data store, fed one student at a time (see
+ * IStudentsStore.beginImport()). The students are grouped in chunks: in
+ * CHUNK_VISIBLE mode, every chunk is added to the data store as soon as it is
+ * full and the buffer is reused, so the memory used by the import does not
+ * depend on its size; in ALL_OR_NOTHING mode, the students are buffered until
+ * finish(). In both modes, the progress listener is notified after every
+ * chunk.
+ *
+ * An import is used by a single thread.
+ */
+public class StudentsImport {
+
+  /*
+   * The maximum capacity reserved up front for an import of a known size (the
+   * announced size comes from the client and is not trusted beyond that)
+   */
+  private static final int MAX_PRESIZED_IMPORT = 1 << 20;
+
+  private final IStudentsStore store;
+  private final ImportMode mode;
+  private final int chunkSize;
+  private final IImportProgressListener listener;
+
+  private final List<Student> buffer;
+  private int numberOfStudents = 0;
+
+  /**
+   * @param store where the students are added
+   * @param mode when the students become visible to the other clients
+   * @param chunkSize the number of students between two progress reports (and
+   * between two additions to the store in CHUNK_VISIBLE mode)
+   * @param expectedNumberOfStudents the announced size of the import, used to
+   * size the buffer (-1 if unknown)
+   * @param listener notified after every chunk, may be null
+   */
+  public StudentsImport(IStudentsStore store, ImportMode mode, int chunkSize, int expectedNumberOfStudents, IImportProgressListener listener) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("The chunk size must be positive: " + chunkSize);
+    }
+    this.store = store;
+    this.mode = mode;
+    this.chunkSize = chunkSize;
+    this.listener = listener;
+    int capacity = mode == ImportMode.CHUNK_VISIBLE ? chunkSize : expectedNumberOfStudents;
+    this.buffer = new ArrayList<>(Math.max(0, Math.min(capacity, MAX_PRESIZED_IMPORT)));
+  }
+
+  /**
+   * Adds a student to the import. When a chunk is complete, it is added to the
+   * data store (CHUNK_VISIBLE mode) and the progress listener is notified.
+   *
+   * @param student the student to import
+   * @throws IOException if the progress listener fails
+   */
+  public void addStudent(Student student) throws IOException {
+    buffer.add(student);
+    numberOfStudents++;
+    if (numberOfStudents % chunkSize == 0) {
+      if (mode == ImportMode.CHUNK_VISIBLE) {
+        flushBuffer();
+      }
+      if (listener != null) {
+        listener.chunkImported(numberOfStudents);
+      }
+    }
+  }
+
+  /**
+   * Adds the students which are not in the data store yet (the last, partial
+   * chunk, or all of them in ALL_OR_NOTHING mode). The import cannot be used
+   * afterwards.
+   *
+   * @return the number of students imported
+   */
+  public int finish() {
+    flushBuffer();
+    return numberOfStudents;
+  }
+
+  /**
+   * @return the number of students imported so far
+   */
+  public int getNumberOfStudents() {
+    return numberOfStudents;
+  }
+
+  private void flushBuffer() {
+    if (!buffer.isEmpty()) {
+      store.addStudents(Collections.unmodifiableList(buffer));
+      buffer.clear();
+    }
+  }
+
+}
@@ -1,5 +1,6 @@
 package ch.heigvd.res.labs.roulette.data;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,6 +15,21 @@ public class StudentsList {
   
   private final List<Student> students = new ArrayList<>();
 
+  /*
+   * The version of the store the students come from (only sent in response to
+   * the conditional LIST commands)
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Long version;
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
   public List<Student> getStudents() {
     ArrayList<Student> list = new ArrayList<>();
     list.addAll(students);
@@ -0,0 +1,48 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.util.List;
+
+/**
+ * This class represents a page of the students of a data store (see
+ * IStudentsStore.pageOfStudents()). Students are only appended to a data store
+ * until it is cleared, so the offset of a student does not change as long as
+ * the epoch (the version of the last clear) stays the same.
+ */
+public class StudentsPage {
+
+  private final long epoch;
+  private final int offset;
+  private final List<Student> students;
+  private final boolean last;
+
+  public StudentsPage(long epoch, int offset, List<Student> students, boolean last) {
+    this.epoch = epoch;
+    this.offset = offset;
+    this.students = students;
+    this.last = last;
+  }
+
+  /**
+   * @return the version of the last clear of the data store when the page was
+   * read
+   */
+  public long getEpoch() {
+    return epoch;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public List<Student> getStudents() {
+    return students;
+  }
+
+  /**
+   * @return true if there was no student after this page when it was read
+   */
+  public boolean isLast() {
+    return last;
+  }
+
+}
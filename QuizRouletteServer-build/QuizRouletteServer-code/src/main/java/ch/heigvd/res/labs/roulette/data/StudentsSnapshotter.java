@@ -0,0 +1,139 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically writes the content of a data store to a roster file (see
+ * RosterFile), so that a restarted server can restore its students without
+ * waiting for the clients to LOAD them again.
+ *
+ * The snapshots are written by a background thread, from a snapshot iteration
+ * of the store (see IStudentsStore.snapshotStudents()): the readers and the
+ * writers of the store are not blocked while the file is written. A snapshot
+ * is only written when the version of the store has changed since the last
+ * one.
+ */
+public class StudentsSnapshotter implements Closeable {
+
+  static final Logger LOG = Logger.getLogger(StudentsSnapshotter.class.getName());
+
+  private final IStudentsStore store;
+  private final Path file;
+
+  /*
+   * The version of the store saved by the last snapshot (-1 if none)
+   */
+  private long snapshotVersion = -1;
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * @param store the store to save
+   * @param file the roster file where the snapshots are written
+   */
+  public StudentsSnapshotter(IStudentsStore store, Path file) {
+    this.store = store;
+    this.file = file;
+  }
+
+  /**
+   * Adds the students of the last snapshot to the store, if there is one. The
+   * roster file is mapped and read sequentially, so this takes about the time
+   * needed to read the file from the disk.
+   *
+   * @return the number of students restored
+   * @throws IOException if the snapshot cannot be read
+   */
+  public synchronized int restore() throws IOException {
+    if (!Files.exists(file)) {
+      return 0;
+    }
+    long startTime = System.nanoTime();
+    List<Student> students = RosterFile.readStudents(file);
+    store.addStudents(students);
+    snapshotVersion = store.getVersion();
+    LOG.log(Level.INFO, "{0} students restored from {1} in {2} ms", new Object[]{students.size(), file, (System.nanoTime() - startTime) / 1000000});
+    return students.size();
+  }
+
+  /**
+   * Writes a snapshot of the store, unless it has not changed since the last
+   * one.
+   *
+   * @return true if a snapshot has been written
+   * @throws IOException if the snapshot cannot be written (the previous one is
+   * kept)
+   */
+  public synchronized boolean snapshot() throws IOException {
+    // the iteration is at least as recent as the version read before it
+    long version = store.getVersion();
+    if (version == snapshotVersion) {
+      return false;
+    }
+    long startTime = System.nanoTime();
+    int numberOfStudents = RosterFile.write(store.snapshotStudents(), file);
+    snapshotVersion = version;
+    LOG.log(Level.INFO, "Snapshot of {0} students written to {1} in {2} ms", new Object[]{numberOfStudents, file, (System.nanoTime() - startTime) / 1000000});
+    return true;
+  }
+
+  /**
+   * Starts writing snapshots periodically, on a background thread. With a
+   * period of 0, no snapshot is written until the snapshotter is closed.
+   *
+   * @param period the time between two snapshots (0 for the final one only)
+   * @param unit the unit of the period
+   */
+  public synchronized void start(long period, TimeUnit unit) {
+    if (period < 0) {
+      throw new IllegalArgumentException("The period of the snapshots cannot be negative: " + period);
+    }
+    if (scheduler != null) {
+      throw new IllegalStateException("Snapshots are already started");
+    }
+    if (period == 0) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "roulette-snapshot-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        snapshot();
+      } catch (IOException | RuntimeException ex) {
+        LOG.log(Level.SEVERE, "Cannot write a snapshot to {0}: {1}", new Object[]{file, ex.getMessage()});
+      }
+    }, period, period, unit);
+  }
+
+  /**
+   * Stops the periodic snapshots and writes a last one, so that the roster
+   * file holds the final content of the store.
+   *
+   * @throws IOException if the last snapshot cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    ScheduledExecutorService stopped;
+    synchronized (this) {
+      stopped = scheduler;
+      scheduler = null;
+    }
+    if (stopped != null) {
+      stopped.shutdown();
+    }
+    snapshot();
+  }
+
+}
@@ -1,13 +1,7 @@
 package ch.heigvd.res.labs.roulette.data;
 
-import ch.heigvd.res.labs.roulette.net.protocol.RouletteV1Protocol;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * A simple implementation of the IStudentStore contract. The data is managed in
@@ -15,20 +9,33 @@ import java.util.logging.Logger;
  *
  * @author Olivier Liechti
  */
-public class StudentsStoreImpl implements IStudentsStore {
-
-  static final Logger LOG = Logger.getLogger(StudentsStoreImpl.class.getName());
+public class StudentsStoreImpl extends AbstractStudentsStore {
 
   private final List<Student> students = new LinkedList<>();
 
+  public StudentsStoreImpl() {
+  }
+
+  public StudentsStoreImpl(IRandomSource randomSource) {
+    super(randomSource);
+  }
+
   @Override
   public synchronized void clear() {
     students.clear();
+    storeCleared();
   }
 
   @Override
   public synchronized void addStudent(Student student) {
     students.add(student);
+    studentsAdded(students.size());
+  }
+
+  @Override
+  public synchronized void addStudents(List<Student> studentsToAdd) {
+    students.addAll(studentsToAdd);
+    studentsAdded(students.size());
   }
 
   @Override
@@ -37,12 +44,36 @@ public class StudentsStoreImpl implements IStudentsStore {
     return result;
   }
 
+  /**
+   * The linked list can only be walked while holding the lock, so this
+   * implementation returns a copy of the list.
+   */
+  @Override
+  public Iterable<Student> snapshotStudents() {
+    return listStudents();
+  }
+
+  @Override
+  public synchronized VersionedStudents versionedSnapshotStudents() {
+    return new VersionedStudents(getVersion(), new LinkedList<>(students));
+  }
+
+  @Override
+  public synchronized StudentsChanges changesSince(long version) {
+    return changes(getVersion(), numberOfStudentsAt(version), students);
+  }
+
+  @Override
+  public synchronized StudentsPage pageOfStudents(int offset, int limit) {
+    return page(getClearVersion(), students, offset, limit);
+  }
+
   @Override
   public synchronized Student pickRandomStudent() throws EmptyStoreException {
     if (students.isEmpty()) {
       throw new EmptyStoreException();
     }
-    int n = (int) (Math.random() * students.size());
+    int n = randomSource.nextIndex(students.size());
     return students.get(n);
   }
 
@@ -51,25 +82,4 @@ public class StudentsStoreImpl implements IStudentsStore {
     return students.size();
   }
 
-  @Override
-  public void importData(BufferedReader reader) throws IOException {
-    LOG.log(Level.INFO, "Importing data from input reader of type {0}", reader.getClass());
-    List<Student> studentsToAdd = new ArrayList<>();
-    String record;
-    boolean endReached = false;
-    while (!endReached && (record = reader.readLine()) != null) {
-      if (record.equalsIgnoreCase(RouletteV1Protocol.CMD_LOAD_ENDOFDATA_MARKER)) {
-        LOG.log(Level.INFO, "End of stream reached. New students have been added to the store. How many? We'll tell you when the lab is complete...");
-        endReached = true;
-      } else {
-        LOG.log(Level.INFO, "Adding student {0} to the store.", record);
-        studentsToAdd.add(new Student(record));
-      }
-    }
-    synchronized (this) {
-      students.addAll(studentsToAdd);
-    }
-    LOG.log(Level.INFO, "There are now {0} students in the store.", getNumberOfStudents());
-  }
-
 }
@@ -0,0 +1,17 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The default random source of the data stores. Every thread uses its own
+ * generator (ThreadLocalRandom), so concurrent RANDOM commands do not contend on
+ * a shared seed, as they do with Math.random().
+ */
+public class ThreadLocalRandomSource implements IRandomSource {
+
+  @Override
+  public int nextIndex(int bound) {
+    return ThreadLocalRandom.current().nextInt(bound);
+  }
+
+}
@@ -0,0 +1,33 @@
+package ch.heigvd.res.labs.roulette.data;
+
+/**
+ * This class represents a snapshot of the students of a data store together
+ * with the version of the store they come from (see
+ * IStudentsStore.versionedSnapshotStudents()): the students are exactly the
+ * ones of this version, neither older nor more recent.
+ */
+public class VersionedStudents {
+
+  private final long version;
+  private final Iterable<Student> students;
+
+  public VersionedStudents(long version, Iterable<Student> students) {
+    this.version = version;
+    this.students = students;
+  }
+
+  /**
+   * @return the version of the data store the students come from
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return the students of the data store at this version, in insertion order
+   */
+  public Iterable<Student> getStudents() {
+    return students;
+  }
+
+}
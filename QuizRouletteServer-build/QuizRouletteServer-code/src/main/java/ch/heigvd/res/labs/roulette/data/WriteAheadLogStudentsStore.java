@@ -0,0 +1,319 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent implementation of the IStudentStore contract: the students are
+ * kept by an in-memory store (which serves all the reads), and every change is
+ * first appended to a write-ahead log file. When the store is opened, the log
+ * is replayed, so the roster survives a restart of the server.
+ *
+ * A change returns once it is durable (the log has been forced to the disk).
+ * Forcing is slow, so it is done by group commit: the writers append their
+ * records one after the other, and then wait for a single force covering all
+ * the records appended so far. While a force is in progress, the next writers
+ * keep appending; the next force covers all of them. Parallel LOADs thus share
+ * the cost of the forces instead of being serialized by them. The changes are
+ * visible to the readers as soon as they are appended (before they are
+ * durable). The version and the change log are the ones of the in-memory
+ * store.
+ *
+ * The log holds one record per change: the length and the CRC32 of the body,
+ * then the body (the type of change, then the number of students and their
+ * full names, each one length-prefixed and encoded in UTF-8). A CLEAR
+ * truncates the log, which therefore only holds the students of the store. A
+ * record which was not completely written (e.g. the server crashed while it
+ * was being appended) is discarded when the log is replayed.
+ */
+public class WriteAheadLogStudentsStore extends AbstractStudentsStore implements Closeable {
+
+  static final Logger LOG = Logger.getLogger(WriteAheadLogStudentsStore.class.getName());
+
+  private static final byte RECORD_ADD = 1;
+
+  private final IStudentsStore delegate;
+
+  private final FileChannel log;
+
+  /*
+   * Appending a record and applying the change to the delegate is done while
+   * holding appendLock, so that the order of the log is the order of the
+   * store. Every record gets the next sequence number.
+   */
+  private final Object appendLock = new Object();
+  private volatile long appendedSequence = 0;
+
+  /*
+   * Group commit: the sequence number of the last durable record, and whether
+   * a writer is forcing the log (the others wait for it), protected by
+   * syncLock
+   */
+  private final Object syncLock = new Object();
+  private long durableSequence = 0;
+  private boolean syncInProgress = false;
+
+  /**
+   * Opens a store persisted in a log file, replaying the log (if the file
+   * exists) into the in-memory store.
+   *
+   * @param delegate the in-memory store, which must be empty
+   * @param logFile the write-ahead log (created if it does not exist)
+   * @throws IOException if the log cannot be read
+   */
+  public WriteAheadLogStudentsStore(IStudentsStore delegate, Path logFile) throws IOException {
+    this.delegate = delegate;
+    this.log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      replay();
+    } catch (IOException | RuntimeException ex) {
+      log.close();
+      throw ex;
+    }
+  }
+
+  /*
+   * Adds the students of the complete records to the delegate, and truncates
+   * the log after the last one
+   */
+  private void replay() throws IOException {
+    long validLength = 0;
+    int records = 0;
+    DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log.position(0)), 64 * 1024));
+    try {
+      while (true) {
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < 0 || length > log.size() - validLength - 8) {
+          break;
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum) {
+          break;
+        }
+        delegate.addStudents(decodeAdd(body));
+        validLength += 8 + length;
+        records++;
+      }
+    } catch (EOFException ex) {
+      // the last record is incomplete, or the end of the log is reached
+    }
+    if (validLength < log.size()) {
+      LOG.log(Level.WARNING, "Discarding {0} bytes of incomplete records at the end of the log", log.size() - validLength);
+      log.truncate(validLength);
+      log.force(false);
+    }
+    log.position(validLength);
+    LOG.log(Level.INFO, "{0} records replayed, {1} students in the store", new Object[]{records, delegate.getNumberOfStudents()});
+  }
+
+  private static List<Student> decodeAdd(byte[] body) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(body);
+    if (buffer.get() != RECORD_ADD) {
+      throw new IOException("Unknown record type in the log");
+    }
+    int count = buffer.getInt();
+    List<Student> students = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int length = buffer.getInt();
+      students.add(new Student(new String(body, buffer.position(), length, StandardCharsets.UTF_8)));
+      buffer.position(buffer.position() + length);
+    }
+    return students;
+  }
+
+  /*
+   * Encodes a record (outside of the locks: it only depends on the students)
+   */
+  private static ByteBuffer encodeAdd(List<Student> students) {
+    List<byte[]> names = new ArrayList<>(students.size());
+    int length = 1 + 4;
+    for (Student student : students) {
+      byte[] name = student.getFullname().getBytes(StandardCharsets.UTF_8);
+      names.add(name);
+      length += 4 + name.length;
+    }
+    ByteBuffer record = ByteBuffer.allocate(8 + length);
+    record.putInt(length);
+    record.putInt(0);
+    record.put(RECORD_ADD);
+    record.putInt(names.size());
+    for (byte[] name : names) {
+      record.putInt(name.length);
+      record.put(name);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 8, length);
+    record.putInt(4, (int) crc.getValue());
+    record.flip();
+    return record;
+  }
+
+  @Override
+  public void clear() {
+    long sequence;
+    synchronized (appendLock) {
+      try {
+        log.truncate(0);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      delegate.clear();
+      sequence = ++appendedSequence;
+    }
+    awaitDurable(sequence);
+  }
+
+  @Override
+  public void addStudent(Student student) {
+    addStudents(Collections.singletonList(student));
+  }
+
+  @Override
+  public void addStudents(List<Student> students) {
+    ByteBuffer record = encodeAdd(students);
+    long sequence;
+    synchronized (appendLock) {
+      long start = -1;
+      try {
+        start = log.position();
+        while (record.hasRemaining()) {
+          log.write(record);
+        }
+      } catch (IOException ex) {
+        discardPartialRecord(start);
+        throw new UncheckedIOException(ex);
+      }
+      delegate.addStudents(students);
+      sequence = ++appendedSequence;
+    }
+    awaitDurable(sequence);
+  }
+
+  /*
+   * After a failed append, removes what was written of the record, so that the
+   * next records are not lost behind it when the log is replayed
+   */
+  private void discardPartialRecord(long start) {
+    if (start >= 0) {
+      try {
+        log.truncate(start);
+        log.position(start);
+      } catch (IOException ex) {
+        LOG.log(Level.SEVERE, "Cannot remove a partial record from the log: {0}", ex.getMessage());
+      }
+    }
+  }
+
+  /*
+   * Waits until a record is durable, forcing the log if no other writer is
+   * doing it (the force covers all the records appended before it starts)
+   */
+  private void awaitDurable(long sequence) {
+    while (true) {
+      synchronized (syncLock) {
+        while (syncInProgress && durableSequence < sequence) {
+          try {
+            syncLock.wait();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the log to be forced"));
+          }
+        }
+        if (durableSequence >= sequence) {
+          return;
+        }
+        syncInProgress = true;
+      }
+      long target = appendedSequence;
+      boolean forced = false;
+      try {
+        log.force(false);
+        forced = true;
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      } finally {
+        synchronized (syncLock) {
+          syncInProgress = false;
+          if (forced) {
+            durableSequence = Math.max(durableSequence, target);
+          }
+          syncLock.notifyAll();
+        }
+      }
+    }
+  }
+
+  @Override
+  public long getVersion() {
+    return delegate.getVersion();
+  }
+
+  @Override
+  public List<Student> listStudents() {
+    return delegate.listStudents();
+  }
+
+  @Override
+  public Iterable<Student> snapshotStudents() {
+    return delegate.snapshotStudents();
+  }
+
+  @Override
+  public VersionedStudents versionedSnapshotStudents() {
+    return delegate.versionedSnapshotStudents();
+  }
+
+  @Override
+  public StudentsChanges changesSince(long version) {
+    return delegate.changesSince(version);
+  }
+
+  @Override
+  public StudentsPage pageOfStudents(int offset, int limit) {
+    return delegate.pageOfStudents(offset, limit);
+  }
+
+  @Override
+  public Student pickRandomStudent() throws EmptyStoreException {
+    return delegate.pickRandomStudent();
+  }
+
+  @Override
+  public int getNumberOfStudents() {
+    return delegate.getNumberOfStudents();
+  }
+
+  /**
+   * Closes the log. The store must not be changed afterwards.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (appendLock) {
+      log.close();
+    }
+  }
+
+}
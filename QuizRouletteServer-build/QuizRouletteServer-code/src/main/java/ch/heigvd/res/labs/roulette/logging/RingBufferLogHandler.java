@@ -0,0 +1,167 @@
+package ch.heigvd.res.labs.roulette.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A logging handler which does not format nor write anything in the threads
+ * which log: records are put in a bounded ring buffer and a background thread
+ * hands them over to a delegate handler (typically a ConsoleHandler). When the
+ * buffer is full, records are dropped instead of blocking the caller, and the
+ * number of dropped records is reported by the background thread.
+ *
+ * Message parameters are formatted by the delegate, in the background thread,
+ * so they must not be modified after having been logged.
+ */
+public class RingBufferLogHandler extends Handler {
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final Handler delegate;
+  private final AtomicReferenceArray<LogRecord> slots;
+  private final int mask;
+
+  /*
+   * Sequence numbers of the next slot to claim by the producers and of the
+   * next slot to read by the background thread
+   */
+  private final AtomicLong writeSequence = new AtomicLong();
+  private volatile long readSequence;
+
+  private final AtomicLong droppedRecords = new AtomicLong();
+  private volatile boolean drainerWaiting;
+  private volatile boolean closed;
+  private final Thread drainer;
+
+  /**
+   * @param delegate the handler which formats and writes the records
+   * @param capacity the number of records the buffer can hold (rounded up to a
+   * power of two)
+   */
+  public RingBufferLogHandler(Handler delegate, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.delegate = delegate;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.drainer = new Thread(this::drain, "roulette-log-writer");
+    this.drainer.setDaemon(true);
+    this.drainer.start();
+  }
+
+  /**
+   * Sends the records of a logger (and of its children) through a new ring
+   * buffer instead of the handlers of the root logger.
+   *
+   * @param logger the logger to make asynchronous. The caller must keep a
+   * reference to it, otherwise the configuration can be lost when the logger is
+   * garbage collected
+   * @param delegate the handler which formats and writes the records
+   * @param capacity the number of records the buffer can hold
+   * @return the handler which has been installed
+   */
+  public static RingBufferLogHandler install(Logger logger, Handler delegate, int capacity) {
+    RingBufferLogHandler handler = new RingBufferLogHandler(delegate, capacity);
+    logger.addHandler(handler);
+    logger.setUseParentHandlers(false);
+    return handler;
+  }
+
+  @Override
+  public void publish(LogRecord record) {
+    if (closed || !isLoggable(record)) {
+      return;
+    }
+    long sequence;
+    do {
+      sequence = writeSequence.get();
+      if (sequence - readSequence >= slots.length()) {
+        droppedRecords.incrementAndGet();
+        return;
+      }
+    } while (!writeSequence.compareAndSet(sequence, sequence + 1));
+    slots.lazySet((int) sequence & mask, record);
+    if (drainerWaiting) {
+      LockSupport.unpark(drainer);
+    }
+  }
+
+  /**
+   * @return the number of records dropped since the last report, because the
+   * buffer was full
+   */
+  public long getDroppedRecords() {
+    return droppedRecords.get();
+  }
+
+  /**
+   * Waits until the records published before the call have been handed over to
+   * the delegate, then flushes it.
+   */
+  @Override
+  public void flush() {
+    long target = writeSequence.get();
+    while (readSequence < target && drainer.isAlive()) {
+      LockSupport.unpark(drainer);
+      Thread.yield();
+    }
+    delegate.flush();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(drainer);
+    try {
+      drainer.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    delegate.close();
+  }
+
+  private void drain() {
+    long sequence = readSequence;
+    while (true) {
+      int index = (int) sequence & mask;
+      LogRecord record = slots.get(index);
+      if (record != null) {
+        slots.lazySet(index, null);
+        readSequence = ++sequence;
+        delegate.publish(record);
+        continue;
+      }
+      reportDroppedRecords();
+      if (closed && sequence == writeSequence.get()) {
+        delegate.flush();
+        return;
+      }
+      // a slot may have been claimed but not filled yet: check again after parking
+      drainerWaiting = true;
+      if (slots.get(index) == null && !closed) {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+      }
+      drainerWaiting = false;
+    }
+  }
+
+  private void reportDroppedRecords() {
+    long dropped = droppedRecords.getAndSet(0);
+    if (dropped > 0) {
+      LogRecord record = new LogRecord(Level.WARNING, "{0} log records have been dropped (the log buffer was full)");
+      record.setParameters(new Object[]{dropped});
+      record.setLoggerName(RingBufferLogHandler.class.getName());
+      record.setSourceClassName(RingBufferLogHandler.class.getName());
+      delegate.publish(record);
+    }
+  }
+
+}
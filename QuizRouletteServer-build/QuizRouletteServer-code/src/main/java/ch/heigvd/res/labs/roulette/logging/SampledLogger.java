@@ -0,0 +1,95 @@
+package ch.heigvd.res.labs.roulette.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides which messages of a frequent category (e.g. one message per command
+ * or per imported student) are worth logging, before any log record is built.
+ * Only one occurrence out of sampleRate is considered, and at most
+ * maxPerSecond messages are logged per second; the number of messages left
+ * out is logged with the next message which goes through.
+ *
+ * The defaults given by the code can be overridden with the
+ * roulette.log.CATEGORY.sampleRate and roulette.log.CATEGORY.maxPerSecond
+ * system properties (a value of 0 or less disables the limit).
+ */
+public class SampledLogger {
+
+  private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final Logger logger;
+  private final String category;
+  private final int sampleRate;
+  private final int maxPerSecond;
+
+  private final AtomicLong occurrences = new AtomicLong();
+  private final AtomicLong suppressed = new AtomicLong();
+  private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+  private final AtomicLong loggedInWindow = new AtomicLong();
+
+  /**
+   * @param logger the logger which receives the messages
+   * @param category the name of the category, used to look up the system
+   * properties
+   * @param defaultSampleRate log one occurrence out of defaultSampleRate
+   * @param defaultMaxPerSecond log at most defaultMaxPerSecond messages per
+   * second
+   */
+  public SampledLogger(Logger logger, String category, int defaultSampleRate, int defaultMaxPerSecond) {
+    this.logger = logger;
+    this.category = category;
+    this.sampleRate = Integer.getInteger("roulette.log." + category + ".sampleRate", defaultSampleRate);
+    this.maxPerSecond = Integer.getInteger("roulette.log." + category + ".maxPerSecond", defaultMaxPerSecond);
+  }
+
+  public String getCategory() {
+    return category;
+  }
+
+  /**
+   * @return the number of messages which have not been logged because of the
+   * sampling or of the rate limit, and which have not been reported yet
+   */
+  public long getSuppressedMessages() {
+    return suppressed.get();
+  }
+
+  /**
+   * Logs a message with one parameter, if the level is enabled and the message
+   * is kept by the sampling and by the rate limit.
+   */
+  public void log(Level level, String message, Object parameter) {
+    if (!logger.isLoggable(level)) {
+      return;
+    }
+    if (!isSampled() || !isWithinRateLimit()) {
+      suppressed.incrementAndGet();
+      return;
+    }
+    logger.logp(level, logger.getName(), category, message, parameter);
+    long notLogged = suppressed.getAndSet(0);
+    if (notLogged > 0) {
+      logger.logp(level, logger.getName(), category, "({0} similar messages not logged)", notLogged);
+    }
+  }
+
+  private boolean isSampled() {
+    return sampleRate <= 1 || occurrences.getAndIncrement() % sampleRate == 0;
+  }
+
+  private boolean isWithinRateLimit() {
+    if (maxPerSecond <= 0) {
+      return true;
+    }
+    long now = System.nanoTime();
+    long start = windowStart.get();
+    if (now - start >= ONE_SECOND && windowStart.compareAndSet(start, now)) {
+      loggedInWindow.set(0);
+    }
+    return loggedInWindow.incrementAndGet() <= maxPerSecond;
+  }
+
+}
@@ -0,0 +1,87 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.Student;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An asynchronous client of the Roulette protocol (version 2). No method
+ * blocks: every operation sends its command and returns a future, completed
+ * when the reply of the server is received. Several commands can be in flight
+ * on the same connection: they are sent in the order of the calls, and their
+ * futures are completed in the same order.
+ *
+ * The futures are completed by the I/O threads of the client: the callbacks
+ * attached to them must not block.
+ */
+public interface IRouletteAsyncClient {
+
+  /**
+   * Establishes a connection with the server.
+   *
+   * @param server the IP address or DNS name of the server
+   * @param port the TCP port on which the server is listening
+   * @return completed when the server has sent its greeting
+   */
+  public CompletableFuture<Void> connect(String server, int port);
+
+  /**
+   * Ends the session with the BYE command, then closes the connection.
+   *
+   * @return completed when the connection is closed
+   */
+  public CompletableFuture<Void> disconnect();
+
+  /**
+   * @return true if the client is connected with the server
+   */
+  public boolean isConnected();
+
+  /**
+   * Adds a student to the store, with the LOAD command.
+   *
+   * @param fullname the student's full name
+   * @return completed when the server has loaded the student
+   */
+  public CompletableFuture<Void> loadStudent(String fullname);
+
+  /**
+   * Adds students to the store, with the LOAD command.
+   *
+   * @param students the students to load
+   * @return completed when the server has loaded the students (or with an
+   * IOException if it has not loaded all of them)
+   */
+  public CompletableFuture<Void> loadStudents(List<Student> students);
+
+  /**
+   * Picks a student, with the RANDOM command.
+   *
+   * @return the student picked by the server, or an EmptyStoreException if
+   * the store is empty
+   */
+  public CompletableFuture<Student> pickRandomStudent();
+
+  /**
+   * @return the number of students in the store (INFO command)
+   */
+  public CompletableFuture<Integer> getNumberOfStudents();
+
+  /**
+   * @return the version of the protocol of the server (INFO command)
+   */
+  public CompletableFuture<String> getProtocolVersion();
+
+  /**
+   * @return the students in the store (LIST command)
+   */
+  public CompletableFuture<List<Student>> listStudents();
+
+  /**
+   * Clears the store, with the CLEAR command.
+   *
+   * @return completed when the server has cleared the store
+   */
+  public CompletableFuture<Void> clearDataStore();
+
+}
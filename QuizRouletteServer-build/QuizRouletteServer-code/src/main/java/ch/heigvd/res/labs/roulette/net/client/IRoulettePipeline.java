@@ -0,0 +1,86 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.Student;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A batch of commands sent to the server at once. The commands are queued,
+ * then execute() writes them all with a single flush and reads the replies in
+ * the order of the commands: the whole batch costs one round trip instead of
+ * one per command.
+ *
+ * Every command returns a future, completed by execute() when its reply is
+ * read (or completed exceptionally if the reply is an error, e.g. with an
+ * EmptyStoreException for RANDOM on an empty store). The replies are read
+ * once all the commands have been sent, so a batch should not send more data
+ * than the socket buffers hold before its first large reply (e.g. a LIST of a
+ * large roster followed by a LOAD of many students).
+ *
+ * A pipeline belongs to the client that created it, and the client must not
+ * be used for other commands while execute() runs.
+ */
+public interface IRoulettePipeline {
+
+  /**
+   * Queues a RANDOM command.
+   *
+   * @return the student picked by the server, or an EmptyStoreException if
+   * the store is empty
+   */
+  public CompletableFuture<Student> pickRandomStudent();
+
+  /**
+   * Queues an INFO command.
+   *
+   * @return the number of students in the store
+   */
+  public CompletableFuture<Integer> getNumberOfStudents();
+
+  /**
+   * Queues an INFO command.
+   *
+   * @return the version of the protocol of the server
+   */
+  public CompletableFuture<String> getProtocolVersion();
+
+  /**
+   * Queues a LIST command.
+   *
+   * @return the students in the store
+   */
+  public CompletableFuture<List<Student>> listStudents();
+
+  /**
+   * Queues a LOAD command, with the students to load.
+   *
+   * @param students the students to load
+   * @return completed when the server has loaded the students (or with an
+   * IOException if it has not loaded all of them)
+   */
+  public CompletableFuture<Void> loadStudents(List<Student> students);
+
+  /**
+   * Queues a CLEAR command.
+   *
+   * @return completed when the server has cleared the store
+   */
+  public CompletableFuture<Void> clearDataStore();
+
+  /**
+   * @return the number of commands queued since the last execute()
+   */
+  public int size();
+
+  /**
+   * Sends the queued commands with a single flush and reads all their
+   * replies, in order. The pipeline is empty afterwards and can be reused.
+   *
+   * @throws IOException if the commands cannot be sent or the replies cannot
+   * be read (the futures of the replies not read are completed with the
+   * exception)
+   */
+  public void execute() throws IOException;
+
+}
@@ -28,6 +28,14 @@ public interface IRouletteV1Client {
    */
   public void disconnect() throws IOException;
 
+  /**
+   * Closes the connection without issuing the 'BYE' command, e.g. when the
+   * server does not answer any more. The client is not connected afterwards.
+   *
+   * @throws IOException
+   */
+  public void abort() throws IOException;
+
   /**
    * Checks if the client is connected with the server
    *
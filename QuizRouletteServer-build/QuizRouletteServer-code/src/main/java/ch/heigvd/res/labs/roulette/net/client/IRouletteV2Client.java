@@ -1,8 +1,11 @@
 package ch.heigvd.res.labs.roulette.net.client;
 
+import ch.heigvd.res.labs.roulette.data.IImportProgressListener;
 import ch.heigvd.res.labs.roulette.data.Student;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  *
@@ -18,6 +21,31 @@ public interface IRouletteV2Client extends IRouletteV1Client {
    */
   public void clearDataStore() throws IOException;
 
+  /**
+   * Loads students with the LOAD PROGRESS command defined in the protocol
+   * (version 2): the server imports them chunk by chunk and reports its
+   * progress after every chunk, while the students are being sent. A server
+   * which does not know LOAD PROGRESS may load them without reporting any
+   * progress.
+   *
+   * @param students the students to load
+   * @param listener notified with the number of students imported so far,
+   * every time the server reports its progress (not null)
+   * @throws IOException
+   */
+  public void loadStudents(List<Student> students, IImportProgressListener listener) throws IOException;
+
+  /**
+   * Asks the server to load one of its roster files, with the IMPORT command
+   * defined in the protocol (version 2).
+   *
+   * @param path the path of the file, relative to the import directory of the
+   * server
+   * @return the number of students loaded
+   * @throws IOException if the server refuses or fails to import the file
+   */
+  public int importFile(String path) throws IOException;
+
   /**
    * Invokes the LIST command defined in the protocol (version 2), parses the
    * response and converts it into a list of Student objects (using the JsonObjectMapper
@@ -28,4 +56,46 @@ public interface IRouletteV2Client extends IRouletteV1Client {
    */
   public List<Student> listStudents() throws IOException;
 
+  /**
+   * Brings the local replica of the students data store up to date, by
+   * invoking the LIST SINCE command defined in the protocol (version 2) with
+   * the version of the replica: only the students added since then are
+   * transferred (unless the server cannot tell, in which case it sends all of
+   * them).
+   *
+   * @return the list of students currently in the store
+   * @throws IOException
+   */
+  public List<Student> syncStudents() throws IOException;
+
+  /**
+   * Iterates over the students of the data store, fetching them lazily, one
+   * page at a time, with the LIST PAGE and LIST CURSOR commands defined in the
+   * protocol (version 2). Students loaded during the iteration may or may not
+   * be returned; if the data store is cleared during the iteration, the
+   * iterator throws a ConcurrentModificationException. Network errors are
+   * thrown as UncheckedIOException. The client must not be used for other
+   * commands while it fetches a page.
+   *
+   * @param pageSize the number of students fetched at once
+   * @return an iterator over the students of the data store
+   */
+  public Iterator<Student> iterateStudents(int pageSize);
+
+  /**
+   * Same as iterateStudents(), as a sequential stream.
+   *
+   * @param pageSize the number of students fetched at once
+   * @return a stream of the students of the data store
+   */
+  public Stream<Student> streamStudents(int pageSize);
+
+  /**
+   * Creates a pipeline, where several commands are queued and then sent at
+   * once, with their replies read in order (see IRoulettePipeline).
+   *
+   * @return an empty pipeline, using the connection of this client
+   */
+  public IRoulettePipeline pipeline();
+
 }
@@ -0,0 +1,37 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.Student;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A client of the Roulette protocol (version 3). The version 3 has the
+ * commands of the version 2 which do not depend on the text protocol (CLEAR,
+ * LIST and pipelining), but neither incremental nor paged LIST, IMPORT or
+ * progress reports: the operations of IRouletteV2Client relying on them are
+ * not part of this interface.
+ */
+public interface IRouletteV3Client extends IRouletteV1Client {
+
+  /**
+   * Clears the students data store, with the CLEAR command.
+   *
+   * @throws IOException
+   */
+  public void clearDataStore() throws IOException;
+
+  /**
+   * @return the list of students currently in the store (LIST command)
+   * @throws IOException
+   */
+  public List<Student> listStudents() throws IOException;
+
+  /**
+   * Creates a pipeline, where several commands are queued and then sent at
+   * once, with their replies read in order (see IRoulettePipeline).
+   *
+   * @return an empty pipeline, using the connection of this client
+   */
+  public IRoulettePipeline pipeline();
+
+}
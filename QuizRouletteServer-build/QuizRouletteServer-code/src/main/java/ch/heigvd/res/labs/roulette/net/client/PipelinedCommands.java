@@ -0,0 +1,117 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Queue of commands of a pipeline (see IRoulettePipeline), independent of the
+ * encoding of the protocol: each command is queued with the code writing its
+ * request and the code reading its reply.
+ */
+class PipelinedCommands
+{
+    /**
+     * Writes request of a command (without flushing).
+     */
+    interface RequestWriter
+    {
+        void write() throws IOException;
+    }
+
+    /**
+     * Reads reply of a command.
+     *
+     * @param <T> type of result of command
+     */
+    interface ReplyReader<T>
+    {
+        T read() throws IOException, EmptyStoreException;
+    }
+
+    private static class Command<T>
+    {
+        final RequestWriter        request;
+        final ReplyReader<T>       reply;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Command(RequestWriter request, ReplyReader<T> reply)
+        {
+            this.request = request;
+            this.reply   = reply;
+        }
+
+        void readReply() throws IOException
+        {
+            try
+            {
+                result.complete(reply.read());
+            }
+            catch (EmptyStoreException ex)
+            {
+                // error reply: stream is still in sync, next replies can be read
+                result.completeExceptionally(ex);
+            }
+        }
+    }
+
+    private List<Command<?>> commands = new ArrayList<>();
+
+    /**
+     * Queue command.
+     *
+     * @param request  writes request of command
+     * @param reply    reads reply of command
+     * @return result of command, completed by execute()
+     */
+    <T> CompletableFuture<T> add(RequestWriter request, ReplyReader<T> reply)
+    {
+        Command<T> command = new Command<>(request, reply);
+        commands.add(command);
+        return command.result;
+    }
+
+    int size()
+    {
+        return commands.size();
+    }
+
+    /**
+     * Write requests of all queued commands, flush them at once, then read replies in order.
+     *
+     * @param out  stream (or writer) where requests are written
+     * @throws IOException if a request cannot be written or a reply cannot be read
+     */
+    void execute(Flushable out) throws IOException
+    {
+        List<Command<?>> batch = commands;
+        commands = new ArrayList<>();
+
+        int replied = 0;
+        try
+        {
+            for (Command<?> command : batch)
+            {
+                command.request.write();
+            }
+            out.flush();
+            for (Command<?> command : batch)
+            {
+                command.readReply();
+                replied++;
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            // connection is out of sync: none of the remaining replies can be read
+            for (Command<?> command : batch.subList(replied, batch.size()))
+            {
+                command.result.completeExceptionally(ex);
+            }
+            throw ex;
+        }
+    }
+}
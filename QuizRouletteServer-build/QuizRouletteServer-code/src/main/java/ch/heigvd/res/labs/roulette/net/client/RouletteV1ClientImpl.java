@@ -73,14 +73,15 @@ public class RouletteV1ClientImpl implements IRouletteV1Client
     /**
      * Verify command is available in protocol
      *
-     * @param cmd  protocol command to verify
+     * @param cmd  protocol command to verify (possibly followed by arguments)
      * @return <code>true</code> if command is valid, else <code>false</code>
      */
     protected boolean isValidCommand (String cmd)
     {
+        String verb = cmd.split(" ", 2)[0];
         for (String supported : getSupportedCommands())
         {
-            if (cmd.equals(supported))
+            if (verb.equals(supported))
             {
                 return true;
             }
@@ -212,6 +213,26 @@ public class RouletteV1ClientImpl implements IRouletteV1Client
         }
     }
 
+    @Override
+    public void abort() throws IOException
+    {
+        // JBL: clear resources without sending BYE command (server may not answer)
+        if (clientSocket == null)
+        {
+            return;
+        }
+        try
+        {
+            clientSocket.close();
+        }
+        finally
+        {
+            pw = null;
+            br = null;
+            clientSocket = null;
+        }
+    }
+
     @Override
     public boolean isConnected()
     {
@@ -0,0 +1,520 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsList;
+import ch.heigvd.res.labs.roulette.net.protocol.ByeCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.InfoCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.LoadCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.RandomCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the client side of the protocol specification (version 2)
+ * asynchronously, on an AsynchronousSocketChannel.
+ *
+ * Commands are queued and written by the I/O threads of the channel group, all the commands
+ * queued while a write is in flight being written at once. A single read is always in flight:
+ * lines are dispatched to the replies awaited, in the order the commands were sent. No thread
+ * is blocked per session, so one application thread can drive thousands of clients sharing a
+ * channel group.
+ */
+public class RouletteV2AsyncClientImpl implements IRouletteAsyncClient
+{
+    private static final Logger LOG = Logger.getLogger(RouletteV2AsyncClientImpl.class.getName());
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /*
+     * Other clients wrap streams with platform default charset, so we do the same
+     */
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * Parses lines of reply to a command.
+     *
+     * @param <T> type of result of command
+     */
+    private interface ReplyParser<T>
+    {
+        T parse(List<String> lines) throws IOException, EmptyStoreException;
+    }
+
+    /**
+     * Reply awaited from server: number of lines it is made of, and future completed once
+     * they have all been received.
+     */
+    private static class Reply<T>
+    {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final int                  numberOfLines;
+        final ReplyParser<T>       parser;
+        final List<String>         lines;
+
+        Reply(int numberOfLines, ReplyParser<T> parser)
+        {
+            this.numberOfLines = numberOfLines;
+            this.parser        = parser;
+            this.lines         = new ArrayList<>(numberOfLines);
+        }
+
+        void complete()
+        {
+            try
+            {
+                result.complete(parser.parse(lines));
+            }
+            catch (IOException | EmptyStoreException | RuntimeException ex)
+            {
+                // reply is complete: following replies can still be read
+                result.completeExceptionally(ex);
+            }
+        }
+    }
+
+    private final AsynchronousChannelGroup group;
+
+    private final ByteBuffer            readBuffer  = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ByteArrayOutputStream currentLine = new ByteArrayOutputStream();
+
+    /*
+     * Guarded by this: whether connection is established (requests are queued until it is),
+     * replies awaited in order, requests not written yet, and requests being written (null
+     * if none)
+     */
+    private AsynchronousSocketChannel channel;
+    private boolean                   closed     = true;
+    private boolean                   connected  = false;
+    private final Deque<Reply<?>>     pending    = new ArrayDeque<>();
+    private final Deque<ByteBuffer>   writeQueue = new ArrayDeque<>();
+    private ByteBuffer[]              writing    = null;
+
+    /**
+     * Create client using default channel group of JVM.
+     */
+    public RouletteV2AsyncClientImpl()
+    {
+        this(null);
+    }
+
+    /**
+     * Create client whose I/O is handled by given channel group (e.g. one group shared by
+     * all clients of an application, with a fixed number of threads).
+     *
+     * @param group  channel group, or <code>null</code> for default one
+     */
+    public RouletteV2AsyncClientImpl(AsynchronousChannelGroup group)
+    {
+        this.group = group;
+    }
+
+    @Override
+    public CompletableFuture<Void> connect(String server, int port)
+    {
+        Reply<Void> greeting = new Reply<>(1, lines -> null);
+        AsynchronousSocketChannel opened;
+        synchronized (this)
+        {
+            if (!closed)
+            {
+                return failed(new IOException("client is already connected"));
+            }
+            try
+            {
+                opened = AsynchronousSocketChannel.open(group);
+            }
+            catch (IOException ex)
+            {
+                return failed(ex);
+            }
+            channel   = opened;
+            closed    = false;
+            connected = false;
+            pending.add(greeting);
+            currentLine.reset();
+            readBuffer.clear();
+        }
+
+        opened.connect(new InetSocketAddress(server, port), null, new CompletionHandler<Void, Void>()
+        {
+            @Override
+            public void completed(Void result, Void attachment)
+            {
+                // commands sent while connecting are written now
+                ByteBuffer[] batch;
+                synchronized (RouletteV2AsyncClientImpl.this)
+                {
+                    if (closed)
+                    {
+                        return;
+                    }
+                    connected = true;
+                    batch     = nextBatch();
+                }
+                read(opened);
+                if (batch != null)
+                {
+                    write(batch);
+                }
+            }
+
+            @Override
+            public void failed(Throwable ex, Void attachment)
+            {
+                close(ex);
+            }
+        });
+        return greeting.result;
+    }
+
+    @Override
+    public CompletableFuture<Void> disconnect()
+    {
+        return send(RouletteV2Protocol.CMD_BYE, 1, lines -> {
+            if (!JsonObjectMapper.parseJson(lines.get(0), ByeCommandResponse.class).getStatus().equals(ByeCommandResponse.SUCCESS))
+            {
+                throw new IOException("failed to send bye command");
+            }
+            return null;
+        }).thenRun(() -> close(new IOException("client is disconnected")));
+    }
+
+    @Override
+    public synchronized boolean isConnected()
+    {
+        return connected;
+    }
+
+    @Override
+    public CompletableFuture<Void> loadStudent(String fullname)
+    {
+        return loadNames(Collections.singletonList(fullname));
+    }
+
+    @Override
+    public CompletableFuture<Void> loadStudents(List<Student> students)
+    {
+        List<String> names = new ArrayList<>(students.size());
+        for (Student student : students)
+        {
+            names.add(student.getFullname());
+        }
+        return loadNames(names);
+    }
+
+    /**
+     * Load students with plain LOAD: names are sent with command, without waiting for server
+     * to ask for them, followed by end marker (counted LOAD would be faster, but servers which
+     * do not know it would take names for commands).
+     */
+    private CompletableFuture<Void> loadNames(List<String> names)
+    {
+        StringBuilder request = new StringBuilder(RouletteV2Protocol.CMD_LOAD);
+        for (String name : names)
+        {
+            request.append(LINE_SEPARATOR).append(name);
+        }
+        request.append(LINE_SEPARATOR).append(RouletteV2Protocol.CMD_LOAD_ENDOFDATA_MARKER);
+        return send(request.toString(), 2, lines -> {
+            if (!lines.get(0).equals(RouletteV2Protocol.RESPONSE_LOAD_START))
+            {
+                throw new IOException("failed to launch loading operation");
+            }
+            LoadCommandResponse response = JsonObjectMapper.parseJson(lines.get(1), LoadCommandResponse.class);
+            if (!response.getStatus().equals(LoadCommandResponse.SUCCESS) || response.getNumberOfNewStudents() != names.size())
+            {
+                throw new IOException("failed to load students list");
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Student> pickRandomStudent()
+    {
+        return send(RouletteV2Protocol.CMD_RANDOM, 1, lines -> {
+            RandomCommandResponse rcr = JsonObjectMapper.parseJson(lines.get(0), RandomCommandResponse.class);
+            if (rcr.getError() != null && !rcr.getError().isEmpty())
+            {
+                throw new EmptyStoreException();
+            }
+            return new Student(rcr.getFullname());
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> getNumberOfStudents()
+    {
+        return send(RouletteV2Protocol.CMD_INFO, 1,
+                lines -> JsonObjectMapper.parseJson(lines.get(0), InfoCommandResponse.class).getNumberOfStudents());
+    }
+
+    @Override
+    public CompletableFuture<String> getProtocolVersion()
+    {
+        return send(RouletteV2Protocol.CMD_INFO, 1,
+                lines -> JsonObjectMapper.parseJson(lines.get(0), InfoCommandResponse.class).getProtocolVersion());
+    }
+
+    @Override
+    public CompletableFuture<List<Student>> listStudents()
+    {
+        return send(RouletteV2Protocol.CMD_LIST, 1,
+                lines -> JsonObjectMapper.parseJson(lines.get(0), StudentsList.class).getStudents());
+    }
+
+    @Override
+    public CompletableFuture<Void> clearDataStore()
+    {
+        return send(RouletteV2Protocol.CMD_CLEAR, 1, lines -> {
+            if (!lines.get(0).equals(RouletteV2Protocol.RESPONSE_CLEAR_DONE))
+            {
+                throw new IOException("failed to clear students list");
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Queue request and reply awaited, and start writing unless a write is already in flight
+     * or connection is not established yet (queued requests are then written when it
+     * completes).
+     *
+     * @param request        request, without final line separator
+     * @param numberOfLines  number of lines of reply
+     * @param parser         parses reply
+     * @return result of command
+     */
+    private <T> CompletableFuture<T> send(String request, int numberOfLines, ReplyParser<T> parser)
+    {
+        Reply<T>     reply  = new Reply<>(numberOfLines, parser);
+        ByteBuffer   buffer = ByteBuffer.wrap((request + LINE_SEPARATOR).getBytes(CHARSET));
+        ByteBuffer[] batch  = null;
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return failed(new IOException("client is not connected"));
+            }
+            pending.add(reply);
+            writeQueue.add(buffer);
+            if (connected && writing == null)
+            {
+                batch = nextBatch();
+            }
+        }
+        if (batch != null)
+        {
+            write(batch);
+        }
+        return reply.result;
+    }
+
+    /*
+     * Takes all queued requests, to be written at once (called with lock held)
+     */
+    private ByteBuffer[] nextBatch()
+    {
+        writing = writeQueue.isEmpty() ? null : writeQueue.toArray(new ByteBuffer[writeQueue.size()]);
+        writeQueue.clear();
+        return writing;
+    }
+
+    private void write(ByteBuffer[] batch)
+    {
+        AsynchronousSocketChannel current;
+        synchronized (this)
+        {
+            current = channel;
+        }
+        try
+        {
+            current.write(batch, 0, batch.length, 0, TimeUnit.MILLISECONDS, batch, writer);
+        }
+        catch (RuntimeException ex)
+        {
+            // e.g. channel group shut down: no completion handler will ever run
+            close(ex);
+        }
+    }
+
+    private void read(AsynchronousSocketChannel current)
+    {
+        try
+        {
+            current.read(readBuffer, null, reader);
+        }
+        catch (RuntimeException ex)
+        {
+            close(ex);
+        }
+    }
+
+    private final CompletionHandler<Long, ByteBuffer[]> writer = new CompletionHandler<Long, ByteBuffer[]>()
+    {
+        @Override
+        public void completed(Long written, ByteBuffer[] batch)
+        {
+            ByteBuffer[] next = batch;
+            synchronized (RouletteV2AsyncClientImpl.this)
+            {
+                if (closed)
+                {
+                    return;
+                }
+                if (!batch[batch.length - 1].hasRemaining())
+                {
+                    next = nextBatch();
+                }
+            }
+            if (next != null)
+            {
+                write(next);
+            }
+        }
+
+        @Override
+        public void failed(Throwable ex, ByteBuffer[] batch)
+        {
+            close(ex);
+        }
+    };
+
+    private final CompletionHandler<Integer, Void> reader = new CompletionHandler<Integer, Void>()
+    {
+        @Override
+        public void completed(Integer read, Void attachment)
+        {
+            if (read < 0)
+            {
+                close(new IOException("connection closed by server"));
+                return;
+            }
+            readBuffer.flip();
+            while (readBuffer.hasRemaining())
+            {
+                byte b = readBuffer.get();
+                if (b == '\n')
+                {
+                    dispatch(new String(currentLine.toByteArray(), CHARSET));
+                    currentLine.reset();
+                }
+                else if (b != '\r')
+                {
+                    currentLine.write(b);
+                }
+            }
+            readBuffer.clear();
+
+            AsynchronousSocketChannel current;
+            synchronized (RouletteV2AsyncClientImpl.this)
+            {
+                if (closed)
+                {
+                    return;
+                }
+                current = channel;
+            }
+            read(current);
+        }
+
+        @Override
+        public void failed(Throwable ex, Void attachment)
+        {
+            close(ex);
+        }
+    };
+
+    /**
+     * Give line received to first reply awaited, and complete it if this was its last line.
+     *
+     * @param line  line sent by server
+     */
+    private void dispatch(String line)
+    {
+        Reply<?> complete = null;
+        synchronized (this)
+        {
+            Reply<?> reply = pending.peek();
+            if (reply == null)
+            {
+                LOG.log(Level.WARNING, "Unexpected line from server: {0}", line);
+                return;
+            }
+            reply.lines.add(line);
+            if (reply.lines.size() == reply.numberOfLines)
+            {
+                complete = pending.poll();
+            }
+        }
+        if (complete != null)
+        {
+            // outside lock: callbacks of future may send other commands
+            complete.complete();
+        }
+    }
+
+    /**
+     * Close connection, and fail replies still awaited.
+     *
+     * @param cause  why connection is closed
+     */
+    private void close(Throwable cause)
+    {
+        List<Reply<?>>            failed;
+        AsynchronousSocketChannel current;
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed    = true;
+            connected = false;
+            current   = channel;
+            failed    = new ArrayList<>(pending);
+            pending.clear();
+            writeQueue.clear();
+            writing = null;
+        }
+        try
+        {
+            current.close();
+        }
+        catch (IOException ex)
+        {
+            LOG.log(Level.INFO, "Exception while closing socket: {0}", ex.getMessage());
+        }
+        for (Reply<?> reply : failed)
+        {
+            reply.result.completeExceptionally(cause);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable ex)
+    {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(ex);
+        return result;
+    }
+}
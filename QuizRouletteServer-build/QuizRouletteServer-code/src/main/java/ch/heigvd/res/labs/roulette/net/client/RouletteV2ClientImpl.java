@@ -1,13 +1,30 @@
 package ch.heigvd.res.labs.roulette.net.client;
 
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.IImportProgressListener;
 import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
 import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsChanges;
 import ch.heigvd.res.labs.roulette.data.StudentsList;
 import ch.heigvd.res.labs.roulette.net.protocol.ByeCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.InfoCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.ListPageCommandResponse;
 import ch.heigvd.res.labs.roulette.net.protocol.LoadCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.RandomCommandResponse;
 import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class implements the client side of the protocol specification (version 2).
@@ -18,6 +35,29 @@ import java.util.List;
  */
 public class RouletteV2ClientImpl extends RouletteV1ClientImpl implements IRouletteV2Client
 {
+    /*
+     * Last roster received with LIST (local replica of store), and version of store it comes
+     * from (-1 if none): LIST is only answered with students when store changed since then,
+     * and LIST SINCE with students added since then
+     */
+    private List<Student> cachedStudents = null;
+    private long          cachedVersion  = -1;
+
+    /*
+     * Whether server supports conditional LIST (servers of other implementations may not)
+     */
+    private boolean conditionalList = true;
+
+    /*
+     * Whether server supports counted LOAD (servers of other implementations may not)
+     */
+    private boolean countedLoad = true;
+
+    /*
+     * Number of students sent between two reads of progress reports during LOAD PROGRESS
+     */
+    private static final int PROGRESS_FLUSH_INTERVAL = 1024;
+
     @Override
     protected String[] getSupportedCommands ()
     {
@@ -39,6 +79,212 @@ public class RouletteV2ClientImpl extends RouletteV1ClientImpl implements IRoule
         return !answer.isEmpty();
     }
 
+    /**
+     * Load students with counted LOAD: number of students is announced first, so server
+     * neither scans for end marker nor grows its buffers. Names are flushed at once.
+     * If server does not know counted LOAD, they are loaded with plain LOAD (ended by
+     * end marker), from now on.
+     *
+     * @param names  full names of students
+     * @throws IOException if sending names failed or server did not load all of them
+     */
+    protected void loadCounted (List<String> names) throws IOException
+    {
+        if (!countedLoad)
+        {
+            loadMarked(names, false);
+            return;
+        }
+
+        if (!sendCommand(RouletteV2Protocol.CMD_LOAD + " " + names.size()))
+        {
+            throw new IOException("failed to launch loading operation");
+        }
+
+        if (!getAnswer().equals(RouletteV2Protocol.RESPONSE_COUNTED_LOAD_START))
+        {
+            // server does not know counted LOAD: it either refused command, or took it for plain LOAD
+            countedLoad = false;
+            loadMarked(names, getAnswer().equals(RouletteV2Protocol.RESPONSE_LOAD_START));
+            return;
+        }
+
+        for (String name : names)
+        {
+            pw.println(name);
+        }
+        pw.flush();
+        if (pw.checkError())
+        {
+            throw new IOException("failed to send data");
+        }
+
+        LoadCommandResponse response = JsonObjectMapper.parseJson(br.readLine(), LoadCommandResponse.class);
+        if (!response.getStatus().equals(LoadCommandResponse.SUCCESS) || response.getNumberOfNewStudents() != names.size())
+        {
+            throw new IOException("failed to load students list");
+        }
+    }
+
+    /**
+     * Load students with plain LOAD: names are sent once server asked for them, followed by
+     * end marker.
+     *
+     * @param names    full names of students
+     * @param started  whether server already asked for names
+     * @throws IOException if sending names failed or server did not load all of them
+     */
+    private void loadMarked (List<String> names, boolean started) throws IOException
+    {
+        if (!started && !sendCommand(RouletteV2Protocol.CMD_LOAD))
+        {
+            throw new IOException("failed to launch loading operation");
+        }
+
+        if (!sendData(names.toArray()))
+        {
+            throw new IOException("failed to load students list");
+        }
+    }
+
+    @Override
+    public void loadStudent(String fullname) throws IOException
+    {
+        loadCounted(Collections.singletonList(fullname));
+    }
+
+    @Override
+    public void loadStudents(List<Student> students) throws IOException
+    {
+        List<String> names = new ArrayList<>(students.size());
+        for (Student student : students)
+        {
+            names.add(student.getFullname());
+        }
+        loadCounted(names);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If server does not know LOAD PROGRESS, students are loaded with plain LOAD, and listener
+     * is not notified.
+     */
+    @Override
+    public void loadStudents(List<Student> students, IImportProgressListener listener) throws IOException
+    {
+        // checked before sending anything: connection must not be left in the middle of data
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("progress listener must not be null");
+        }
+
+        if (!sendCommand(RouletteV2Protocol.CMD_LOAD + " " + RouletteV2Protocol.LOAD_PROGRESS))
+        {
+            throw new IOException("failed to launch loading operation");
+        }
+
+        if (!getAnswer().equals(RouletteV2Protocol.RESPONSE_LOAD_START))
+        {
+            // server refused command: names must not be sent, it would take them for commands
+            List<String> names = new ArrayList<>(students.size());
+            for (Student student : students)
+            {
+                names.add(student.getFullname());
+            }
+            loadMarked(names, false);
+            return;
+        }
+
+        int sent = 0;
+        for (Student student : students)
+        {
+            pw.println(student.getFullname());
+            if (++sent % PROGRESS_FLUSH_INTERVAL == 0)
+            {
+                // server reports progress while we send: read reports now, or both sides may block on full buffers
+                pw.flush();
+                while (br.ready())
+                {
+                    readProgress(br.readLine(), listener);
+                }
+            }
+        }
+        pw.println(RouletteV2Protocol.CMD_LOAD_ENDOFDATA_MARKER);
+        pw.flush();
+        if (pw.checkError())
+        {
+            throw new IOException("failed to send data");
+        }
+
+        String line;
+        while ((line = br.readLine()) != null && readProgress(line, listener))
+        {
+            // progress reported after last chunk sent
+        }
+        if (line == null)
+        {
+            throw new IOException("connection closed while loading students");
+        }
+        LoadCommandResponse response = JsonObjectMapper.parseJson(line, LoadCommandResponse.class);
+        if (!response.getStatus().equals(LoadCommandResponse.SUCCESS) || response.getNumberOfNewStudents() != students.size())
+        {
+            throw new IOException("failed to load students list");
+        }
+    }
+
+    @Override
+    public int importFile(String path) throws IOException
+    {
+        if (!sendCommand(RouletteV2Protocol.CMD_IMPORT + " " + path))
+        {
+            throw new IOException("failed to send import command");
+        }
+        LoadCommandResponse response = JsonObjectMapper.parseJson(getAnswer(), LoadCommandResponse.class);
+        if (!response.getStatus().equals(LoadCommandResponse.SUCCESS))
+        {
+            throw new IOException("server failed to import `" + path + "`");
+        }
+        return response.getNumberOfNewStudents();
+    }
+
+    /**
+     * Notify listener if line sent by server during LOAD PROGRESS is a progress report.
+     *
+     * @param line      line sent by server
+     * @param listener  notified with number of students imported so far
+     * @return <code>true</code> if line is a progress report, else <code>false</code>
+     * @throws IOException if line is neither a progress report nor expected at this point
+     */
+    private static boolean readProgress (String line, IImportProgressListener listener) throws IOException
+    {
+        String prefix = RouletteV2Protocol.RESPONSE_LOAD_PROGRESS + " ";
+        if (line == null || !line.startsWith(prefix))
+        {
+            return false;
+        }
+        try
+        {
+            listener.chunkImported(Integer.parseInt(line.substring(prefix.length())));
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IOException("invalid progress report - `" + line + "`", ex);
+        }
+        return true;
+    }
+
+    @Override
+    public void connect(String server, int port) throws IOException
+    {
+        // cached roster belongs to previous server
+        cachedStudents  = null;
+        cachedVersion   = -1;
+        conditionalList = true;
+        countedLoad     = true;
+        super.connect(server, port);
+    }
+
     @Override
     public void disconnect() throws IOException
     {
@@ -72,9 +318,39 @@ public class RouletteV2ClientImpl extends RouletteV1ClientImpl implements IRoule
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Roster is cached with version of store: it is only sent again by server if store changed since.
+     */
     @Override
     public List<Student> listStudents() throws IOException
     {
+        if (conditionalList)
+        {
+            if (!sendCommand(RouletteV2Protocol.CMD_LIST + " " + RouletteV2Protocol.LIST_IF_NONE_MATCH + " " + cachedVersion))
+            {
+                throw new IOException("failed to ask students list");
+            }
+
+            if (getAnswer().equals(RouletteV2Protocol.RESPONSE_NOT_MODIFIED) && cachedStudents != null)
+            {
+                return new ArrayList<>(cachedStudents);
+            }
+
+            if (getAnswer().startsWith("{"))
+            {
+                StudentsList sl = JsonObjectMapper.parseJson(getAnswer(), StudentsList.class);
+                // replica is a copy: caller may modify list returned
+                cachedStudents = new ArrayList<>(sl.getStudents());
+                cachedVersion  = sl.getVersion() != null ? sl.getVersion() : -1;
+                return sl.getStudents();
+            }
+
+            // server does not know conditional LIST: use plain one from now on
+            conditionalList = false;
+        }
+
         if (!sendCommand(RouletteV2Protocol.CMD_LIST))
         {
             throw new IOException("failed to ask students list");
@@ -82,4 +358,238 @@ public class RouletteV2ClientImpl extends RouletteV1ClientImpl implements IRoule
 
         return JsonObjectMapper.parseJson(getAnswer(), StudentsList.class).getStudents();
     }
+
+    @Override
+    public List<Student> syncStudents() throws IOException
+    {
+        if (!sendCommand(RouletteV2Protocol.CMD_LIST + " " + RouletteV2Protocol.LIST_SINCE + " " + cachedVersion))
+        {
+            throw new IOException("failed to ask students changes");
+        }
+
+        if (!getAnswer().startsWith("{"))
+        {
+            throw new IOException("server does not support LIST SINCE");
+        }
+
+        StudentsChanges changes = JsonObjectMapper.parseJson(getAnswer(), StudentsChanges.class);
+        if (changes.isFullSnapshot() || cachedStudents == null)
+        {
+            cachedStudents = new ArrayList<>(changes.getStudents());
+        }
+        else
+        {
+            cachedStudents.addAll(changes.getStudents());
+        }
+        cachedVersion = changes.getVersion();
+
+        return new ArrayList<>(cachedStudents);
+    }
+
+    @Override
+    public Iterator<Student> iterateStudents(int pageSize)
+    {
+        if (pageSize < 1 || pageSize > RouletteV2Protocol.MAX_PAGE_SIZE)
+        {
+            throw new IllegalArgumentException("page size must be between 1 and " + RouletteV2Protocol.MAX_PAGE_SIZE);
+        }
+        return new PagedStudentsIterator(pageSize);
+    }
+
+    @Override
+    public Stream<Student> streamStudents(int pageSize)
+    {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterateStudents(pageSize), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Iterator fetching next page from server when current one is consumed.
+     */
+    private class PagedStudentsIterator implements Iterator<Student>
+    {
+        private final int pageSize;
+
+        private Iterator<Student> page       = Collections.emptyIterator();
+        private String            nextCursor = null;
+        private boolean           started    = false;
+
+        PagedStudentsIterator(int pageSize)
+        {
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            // pages may be empty (e.g. store cleared then reloaded): fetch until a student or end is found
+            while (!page.hasNext() && (!started || nextCursor != null))
+            {
+                fetchPage();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public Student next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        private void fetchPage()
+        {
+            String command = started
+                ? RouletteV2Protocol.CMD_LIST + " " + RouletteV2Protocol.LIST_CURSOR + " " + nextCursor + " " + pageSize
+                : RouletteV2Protocol.CMD_LIST + " " + RouletteV2Protocol.LIST_PAGE + " 0 " + pageSize;
+            try
+            {
+                if (!sendCommand(command))
+                {
+                    throw new IOException("failed to ask students page");
+                }
+                if (getAnswer().equals(RouletteV2Protocol.RESPONSE_CURSOR_EXPIRED))
+                {
+                    throw new ConcurrentModificationException("students data store has been cleared during iteration");
+                }
+
+                ListPageCommandResponse response = JsonObjectMapper.parseJson(getAnswer(), ListPageCommandResponse.class);
+                page       = response.getStudents().iterator();
+                nextCursor = response.getNextCursor();
+                started    = true;
+            }
+            catch (IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public IRoulettePipeline pipeline()
+    {
+        return new Pipeline();
+    }
+
+    /**
+     * Pipeline writing commands with client writer and reading replies line by line.
+     * Plain LIST is used: replies of conditional LIST depend on roster cached by client,
+     * which may change while batch is queued. Plain LOAD is used as well: names are written
+     * before server answers, so they must not be taken for commands by servers which do
+     * not know counted LOAD.
+     */
+    private class Pipeline implements IRoulettePipeline
+    {
+        private final PipelinedCommands commands = new PipelinedCommands();
+
+        @Override
+        public CompletableFuture<Student> pickRandomStudent()
+        {
+            return commands.add(() -> pw.println(RouletteV2Protocol.CMD_RANDOM), () -> {
+                RandomCommandResponse rcr = JsonObjectMapper.parseJson(readReply(), RandomCommandResponse.class);
+                if (rcr.getError() != null && !rcr.getError().isEmpty())
+                {
+                    throw new EmptyStoreException();
+                }
+                return new Student(rcr.getFullname());
+            });
+        }
+
+        @Override
+        public CompletableFuture<Integer> getNumberOfStudents()
+        {
+            return commands.add(() -> pw.println(RouletteV2Protocol.CMD_INFO),
+                    () -> JsonObjectMapper.parseJson(readReply(), InfoCommandResponse.class).getNumberOfStudents());
+        }
+
+        @Override
+        public CompletableFuture<String> getProtocolVersion()
+        {
+            return commands.add(() -> pw.println(RouletteV2Protocol.CMD_INFO),
+                    () -> JsonObjectMapper.parseJson(readReply(), InfoCommandResponse.class).getProtocolVersion());
+        }
+
+        @Override
+        public CompletableFuture<List<Student>> listStudents()
+        {
+            return commands.add(() -> pw.println(RouletteV2Protocol.CMD_LIST),
+                    () -> JsonObjectMapper.parseJson(readReply(), StudentsList.class).getStudents());
+        }
+
+        @Override
+        public CompletableFuture<Void> loadStudents(List<Student> students)
+        {
+            // names are sent without waiting for server to ask for them
+            List<String> names = new ArrayList<>(students.size());
+            for (Student student : students)
+            {
+                names.add(student.getFullname());
+            }
+            return commands.add(() -> {
+                pw.println(RouletteV2Protocol.CMD_LOAD);
+                for (String name : names)
+                {
+                    pw.println(name);
+                }
+                pw.println(RouletteV2Protocol.CMD_LOAD_ENDOFDATA_MARKER);
+            }, () -> {
+                if (!readReply().equals(RouletteV2Protocol.RESPONSE_LOAD_START))
+                {
+                    throw new IOException("failed to launch loading operation");
+                }
+                LoadCommandResponse response = JsonObjectMapper.parseJson(readReply(), LoadCommandResponse.class);
+                if (!response.getStatus().equals(LoadCommandResponse.SUCCESS) || response.getNumberOfNewStudents() != names.size())
+                {
+                    throw new IOException("failed to load students list");
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public CompletableFuture<Void> clearDataStore()
+        {
+            return commands.add(() -> pw.println(RouletteV2Protocol.CMD_CLEAR), () -> {
+                if (!readReply().equals(RouletteV2Protocol.RESPONSE_CLEAR_DONE))
+                {
+                    throw new IOException("failed to clear students list");
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public int size()
+        {
+            return commands.size();
+        }
+
+        @Override
+        public void execute() throws IOException
+        {
+            if (!isConnected())
+            {
+                throw new IOException("client is not connected");
+            }
+            commands.execute(() -> {
+                pw.flush();
+                if (pw.checkError())
+                {
+                    throw new IOException("failed to send commands");
+                }
+            });
+        }
+
+        private String readReply() throws IOException
+        {
+            String line = br.readLine();
+            if (line == null)
+            {
+                throw new IOException("connection closed before all replies were read");
+            }
+            return line;
+        }
+    }
 }
@@ -0,0 +1,323 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A thread-safe pool of connected clients (version 2), so that short-lived users (e.g. one
+ * per HTTP request) do not pay for a TCP handshake and the greeting of the server every time.
+ *
+ * Clients are borrowed with borrow() and given back with release(), or invalidate() if they
+ * failed; execute() does both around an operation. Idle clients are reused most recently used
+ * first. A client idle for longer than the health check interval is checked with INFO before
+ * it is lent, and replaced if the server does not answer. At most maxIdle clients are kept
+ * idle: extra ones are disconnected when they are released. The pool does not limit the number
+ * of clients lent at the same time.
+ */
+public class RouletteV2ClientPool implements Closeable
+{
+    private static final Logger LOG = Logger.getLogger(RouletteV2ClientPool.class.getName());
+
+    /**
+     * Default time a client can stay idle before it is checked again
+     */
+    public static final long DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS = 30000;
+
+    /**
+     * Operation executed with a borrowed client.
+     *
+     * @param <T> type of result of operation
+     */
+    public interface Operation<T>
+    {
+        T apply(IRouletteV2Client client) throws IOException, EmptyStoreException;
+    }
+
+    private static class IdleClient
+    {
+        final IRouletteV2Client client;
+        final long              idleSince;
+
+        IdleClient(IRouletteV2Client client, long idleSince)
+        {
+            this.client    = client;
+            this.idleSince = idleSince;
+        }
+    }
+
+    private final String server;
+    private final int    port;
+    private final int    minIdle;
+    private final int    maxIdle;
+
+    private volatile long healthCheckInterval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS);
+
+    /*
+     * Guarded by this: idle clients, most recently released last
+     */
+    private final Deque<IdleClient> idle   = new ArrayDeque<>();
+    private boolean                 closed = false;
+
+    /**
+     * Create pool and open its first minIdle connections.
+     *
+     * @param server   IP address or DNS name of server
+     * @param port     TCP port on which server is listening
+     * @param minIdle  number of connections opened up front (see fill())
+     * @param maxIdle  maximum number of idle connections kept
+     * @throws IOException if first connections cannot be opened
+     */
+    public RouletteV2ClientPool(String server, int port, int minIdle, int maxIdle) throws IOException
+    {
+        if (minIdle < 0 || maxIdle < minIdle)
+        {
+            throw new IllegalArgumentException("idle connections must satisfy 0 <= minIdle <= maxIdle");
+        }
+        this.server  = server;
+        this.port    = port;
+        this.minIdle = minIdle;
+        this.maxIdle = maxIdle;
+        fill();
+    }
+
+    /**
+     * Set time a client can stay idle before it is checked with INFO when it is borrowed
+     * (0 to check every client before lending it).
+     *
+     * @param interval  time between checks
+     * @param unit      unit of interval
+     */
+    public void setHealthCheckInterval(long interval, TimeUnit unit)
+    {
+        this.healthCheckInterval = unit.toNanos(interval);
+    }
+
+    /**
+     * Open connections until pool has at least minIdle idle clients, e.g. after a burst of
+     * failures has emptied it.
+     *
+     * @throws IOException if a connection cannot be opened
+     */
+    public void fill() throws IOException
+    {
+        while (true)
+        {
+            synchronized (this)
+            {
+                checkOpen();
+                if (idle.size() >= minIdle)
+                {
+                    return;
+                }
+            }
+            // connect outside lock: other threads keep borrowing meanwhile
+            release(connect());
+        }
+    }
+
+    /**
+     * Lend a connected client, idle one if there is any, else a new one. Client must be given
+     * back with release() or invalidate(), and must not be used afterwards.
+     *
+     * @return connected client
+     * @throws IOException if no idle client is healthy and a new connection cannot be opened
+     */
+    public IRouletteV2Client borrow() throws IOException
+    {
+        while (true)
+        {
+            IdleClient candidate;
+            synchronized (this)
+            {
+                checkOpen();
+                candidate = idle.pollLast();
+            }
+            if (candidate == null)
+            {
+                return connect();
+            }
+            if (isHealthy(candidate))
+            {
+                return candidate.client;
+            }
+            discard(candidate.client);
+        }
+    }
+
+    /**
+     * Give back a client borrowed from pool: it is kept idle, unless it has been disconnected,
+     * pool already has maxIdle idle clients, or pool is closed.
+     *
+     * @param client  client borrowed from pool
+     */
+    public void release(IRouletteV2Client client)
+    {
+        synchronized (this)
+        {
+            if (!closed && client.isConnected() && idle.size() < maxIdle)
+            {
+                idle.addLast(new IdleClient(client, System.nanoTime()));
+                return;
+            }
+        }
+        disconnect(client);
+    }
+
+    /**
+     * Give back a client which failed (e.g. an operation threw IOException): it is closed and
+     * never lent again.
+     *
+     * @param client  client borrowed from pool
+     */
+    public void invalidate(IRouletteV2Client client)
+    {
+        discard(client);
+    }
+
+    /**
+     * Borrow a client, apply operation and give client back (invalidated if operation threw
+     * IOException: connection may be out of sync).
+     *
+     * @param operation  operation to apply
+     * @return result of operation
+     * @throws IOException if no client can be borrowed or operation failed
+     * @throws EmptyStoreException if operation picked a student in an empty store
+     */
+    public <T> T execute(Operation<T> operation) throws IOException, EmptyStoreException
+    {
+        IRouletteV2Client client = borrow();
+        T                 result;
+        try
+        {
+            result = operation.apply(client);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            invalidate(client);
+            throw ex;
+        }
+        catch (EmptyStoreException ex)
+        {
+            release(client);
+            throw ex;
+        }
+        release(client);
+        return result;
+    }
+
+    /**
+     * @return number of idle clients in pool
+     */
+    public synchronized int getNumberOfIdleClients()
+    {
+        return idle.size();
+    }
+
+    /**
+     * Disconnect idle clients. Clients still borrowed are disconnected when they are released.
+     */
+    @Override
+    public void close()
+    {
+        List<IdleClient> clients;
+        synchronized (this)
+        {
+            closed  = true;
+            clients = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (IdleClient idleClient : clients)
+        {
+            disconnect(idleClient.client);
+        }
+    }
+
+    /**
+     * Create client of pool (not connected yet).
+     *
+     * @return new client
+     */
+    protected IRouletteV2Client createClient()
+    {
+        return new RouletteV2ClientImpl();
+    }
+
+    private IRouletteV2Client connect() throws IOException
+    {
+        IRouletteV2Client client = createClient();
+        client.connect(server, port);
+        return client;
+    }
+
+    /**
+     * Check idle client with INFO if it has been idle for longer than health check interval.
+     */
+    private boolean isHealthy(IdleClient candidate)
+    {
+        if (!candidate.client.isConnected())
+        {
+            return false;
+        }
+        if (System.nanoTime() - candidate.idleSince < healthCheckInterval)
+        {
+            return true;
+        }
+        try
+        {
+            candidate.client.getNumberOfStudents();
+            return true;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            LOG.log(Level.INFO, "Idle connection failed its health check: {0}", ex.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void checkOpen() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("pool is closed");
+        }
+    }
+
+    /*
+     * Close broken client without saying BYE: server may not answer
+     */
+    private static void discard(IRouletteV2Client client)
+    {
+        try
+        {
+            client.abort();
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            LOG.log(Level.INFO, "Exception while closing socket: {0}", ex.getMessage());
+        }
+    }
+
+    private static void disconnect(IRouletteV2Client client)
+    {
+        try
+        {
+            if (client.isConnected())
+            {
+                client.disconnect();
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            LOG.log(Level.INFO, "Exception while disconnecting client: {0}", ex.getMessage());
+            discard(client);
+        }
+    }
+}
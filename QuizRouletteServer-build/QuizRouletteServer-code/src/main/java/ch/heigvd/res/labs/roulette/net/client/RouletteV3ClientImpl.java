@@ -0,0 +1,312 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV3Protocol;
+import static ch.heigvd.res.labs.roulette.net.protocol.RouletteV3Frames.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class implements the client side of the protocol specification (version 3).
+ *
+ * Protocol version 3 has no incremental nor paged LIST, no IMPORT and no progress
+ * reports: the client only offers the operations of IRouletteV3Client.
+ */
+public class RouletteV3ClientImpl implements IRouletteV3Client
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Socket       clientSocket;
+    private InputStream  in;
+    private OutputStream out;
+
+    @Override
+    public void connect(String server, int port) throws IOException
+    {
+        clientSocket = new Socket(server, port);
+        clientSocket.setTcpNoDelay(true);
+        in  = new BufferedInputStream(clientSocket.getInputStream(), BUFFER_SIZE);
+        out = new BufferedOutputStream(clientSocket.getOutputStream(), BUFFER_SIZE);
+
+        // greeting: status and version of protocol
+        expectStatus(RouletteV3Protocol.STATUS_OK);
+        readString(in);
+    }
+
+    @Override
+    public void disconnect() throws IOException
+    {
+        if (!isConnected())
+        {
+            return;
+        }
+        try
+        {
+            sendOpcode(RouletteV3Protocol.OP_BYE);
+            expectStatus(RouletteV3Protocol.STATUS_OK);
+            readVarint(in);
+        }
+        finally
+        {
+            clientSocket.close();
+            clientSocket = null;
+            in           = null;
+            out          = null;
+        }
+    }
+
+    @Override
+    public void abort() throws IOException
+    {
+        if (clientSocket == null)
+        {
+            return;
+        }
+        try
+        {
+            clientSocket.close();
+        }
+        finally
+        {
+            clientSocket = null;
+            in           = null;
+            out          = null;
+        }
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return clientSocket != null && clientSocket.isConnected();
+    }
+
+    @Override
+    public void loadStudent(String fullname) throws IOException
+    {
+        loadNames(Collections.singletonList(fullname));
+    }
+
+    @Override
+    public void loadStudents(List<Student> students) throws IOException
+    {
+        List<String> names = new ArrayList<>(students.size());
+        for (Student student : students)
+        {
+            names.add(student.getFullname());
+        }
+        loadNames(names);
+    }
+
+    private void loadNames(List<String> names) throws IOException
+    {
+        checkConnected();
+        writeLoad(names);
+        out.flush();
+        readLoad(names.size());
+    }
+
+    @Override
+    public Student pickRandomStudent() throws EmptyStoreException, IOException
+    {
+        sendOpcode(RouletteV3Protocol.OP_RANDOM);
+        return readRandom();
+    }
+
+    @Override
+    public int getNumberOfStudents() throws IOException
+    {
+        sendOpcode(RouletteV3Protocol.OP_INFO);
+        expectStatus(RouletteV3Protocol.STATUS_OK);
+        readString(in);
+        return readVarint(in);
+    }
+
+    @Override
+    public String getProtocolVersion() throws IOException
+    {
+        sendOpcode(RouletteV3Protocol.OP_INFO);
+        return readProtocolVersion();
+    }
+
+    @Override
+    public void clearDataStore() throws IOException
+    {
+        sendOpcode(RouletteV3Protocol.OP_CLEAR);
+        expectStatus(RouletteV3Protocol.STATUS_OK);
+    }
+
+    @Override
+    public List<Student> listStudents() throws IOException
+    {
+        sendOpcode(RouletteV3Protocol.OP_LIST);
+        return readList();
+    }
+
+    @Override
+    public IRoulettePipeline pipeline()
+    {
+        return new Pipeline();
+    }
+
+    /**
+     * Pipeline writing requests in output buffer of client, flushed once by execute().
+     */
+    private class Pipeline implements IRoulettePipeline
+    {
+        private final PipelinedCommands commands = new PipelinedCommands();
+
+        @Override
+        public CompletableFuture<Student> pickRandomStudent()
+        {
+            return commands.add(() -> out.write(RouletteV3Protocol.OP_RANDOM), RouletteV3ClientImpl.this::readRandom);
+        }
+
+        @Override
+        public CompletableFuture<Integer> getNumberOfStudents()
+        {
+            return commands.add(() -> out.write(RouletteV3Protocol.OP_INFO), () -> {
+                expectStatus(RouletteV3Protocol.STATUS_OK);
+                readString(in);
+                return readVarint(in);
+            });
+        }
+
+        @Override
+        public CompletableFuture<String> getProtocolVersion()
+        {
+            return commands.add(() -> out.write(RouletteV3Protocol.OP_INFO), RouletteV3ClientImpl.this::readProtocolVersion);
+        }
+
+        @Override
+        public CompletableFuture<List<Student>> listStudents()
+        {
+            return commands.add(() -> out.write(RouletteV3Protocol.OP_LIST), RouletteV3ClientImpl.this::readList);
+        }
+
+        @Override
+        public CompletableFuture<Void> loadStudents(List<Student> students)
+        {
+            List<String> names = new ArrayList<>(students.size());
+            for (Student student : students)
+            {
+                names.add(student.getFullname());
+            }
+            return commands.add(() -> writeLoad(names), () -> {
+                readLoad(names.size());
+                return null;
+            });
+        }
+
+        @Override
+        public CompletableFuture<Void> clearDataStore()
+        {
+            return commands.add(() -> out.write(RouletteV3Protocol.OP_CLEAR), () -> {
+                expectStatus(RouletteV3Protocol.STATUS_OK);
+                return null;
+            });
+        }
+
+        @Override
+        public int size()
+        {
+            return commands.size();
+        }
+
+        @Override
+        public void execute() throws IOException
+        {
+            checkConnected();
+            commands.execute(out);
+        }
+    }
+
+    private void writeLoad(List<String> names) throws IOException
+    {
+        out.write(RouletteV3Protocol.OP_LOAD);
+        writeVarint(out, names.size());
+        for (String name : names)
+        {
+            writeString(out, name);
+        }
+    }
+
+    private void readLoad(int numberOfStudents) throws IOException
+    {
+        expectStatus(RouletteV3Protocol.STATUS_OK);
+        if (readVarint(in) != numberOfStudents)
+        {
+            throw new IOException("failed to load students list");
+        }
+    }
+
+    private Student readRandom() throws EmptyStoreException, IOException
+    {
+        int status = readByte(in);
+        if (status == RouletteV3Protocol.STATUS_EMPTY)
+        {
+            throw new EmptyStoreException();
+        }
+        checkStatus(status, RouletteV3Protocol.STATUS_OK);
+        return new Student(readString(in));
+    }
+
+    private String readProtocolVersion() throws IOException
+    {
+        expectStatus(RouletteV3Protocol.STATUS_OK);
+        String version = readString(in);
+        readVarint(in);
+        return version;
+    }
+
+    private List<Student> readList() throws IOException
+    {
+        expectStatus(RouletteV3Protocol.STATUS_OK);
+        List<Student> students = new ArrayList<>();
+        int count;
+        while ((count = readVarint(in)) > 0)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                students.add(new Student(readString(in)));
+            }
+        }
+        return students;
+    }
+
+    private void checkConnected() throws IOException
+    {
+        if (!isConnected())
+        {
+            throw new IOException("client is not connected");
+        }
+    }
+
+    private void sendOpcode(byte opcode) throws IOException
+    {
+        checkConnected();
+        out.write(opcode);
+        out.flush();
+    }
+
+    private void expectStatus(byte expected) throws IOException
+    {
+        checkStatus(readByte(in), expected);
+    }
+
+    private static void checkStatus(int status, byte expected) throws IOException
+    {
+        if (status != expected)
+        {
+            throw new IOException("unexpected status from server - " + status);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ch.heigvd.res.labs.roulette.net.protocol;
+
+import ch.heigvd.res.labs.roulette.data.Student;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is used to serialize/deserialize the response sent by the server
+ * when processing the paged "LIST PAGE" and "LIST CURSOR" commands. The cursor
+ * of the next page is opaque to the client; it is null after the last page.
+ */
+public class ListPageCommandResponse {
+
+  private List<Student> students = new ArrayList<>();
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String nextCursor;
+
+  public ListPageCommandResponse() {
+  }
+
+  public ListPageCommandResponse(List<Student> students, String nextCursor) {
+    this.students = students;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<Student> getStudents() {
+    return students;
+  }
+
+  public void setStudents(List<Student> students) {
+    this.students = students;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+
+}
@@ -0,0 +1,105 @@
+package ch.heigvd.res.labs.roulette.net.protocol;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is used to serialize/deserialize the response sent by the server
+ * when processing the "METRICS" command defined in the protocol specification
+ * (version 2). For every command type, it gives the number of commands
+ * processed since the server has started and their latency distribution (in
+ * microseconds). The JsonObjectMapper utility class can use this class.
+ */
+public class MetricsCommandResponse {
+
+  private long uptimeSeconds;
+  private Map<String, CommandStatistics> commands = new LinkedHashMap<>();
+
+  public long getUptimeSeconds() {
+    return uptimeSeconds;
+  }
+
+  public void setUptimeSeconds(long uptimeSeconds) {
+    this.uptimeSeconds = uptimeSeconds;
+  }
+
+  public Map<String, CommandStatistics> getCommands() {
+    return commands;
+  }
+
+  public void setCommands(Map<String, CommandStatistics> commands) {
+    this.commands = commands;
+  }
+
+  /**
+   * The statistics of one command type.
+   */
+  public static class CommandStatistics {
+
+    private long count;
+    private double meanMicros;
+    private double p50Micros;
+    private double p90Micros;
+    private double p99Micros;
+    private double p999Micros;
+    private double maxMicros;
+
+    public long getCount() {
+      return count;
+    }
+
+    public void setCount(long count) {
+      this.count = count;
+    }
+
+    public double getMeanMicros() {
+      return meanMicros;
+    }
+
+    public void setMeanMicros(double meanMicros) {
+      this.meanMicros = meanMicros;
+    }
+
+    public double getP50Micros() {
+      return p50Micros;
+    }
+
+    public void setP50Micros(double p50Micros) {
+      this.p50Micros = p50Micros;
+    }
+
+    public double getP90Micros() {
+      return p90Micros;
+    }
+
+    public void setP90Micros(double p90Micros) {
+      this.p90Micros = p90Micros;
+    }
+
+    public double getP99Micros() {
+      return p99Micros;
+    }
+
+    public void setP99Micros(double p99Micros) {
+      this.p99Micros = p99Micros;
+    }
+
+    public double getP999Micros() {
+      return p999Micros;
+    }
+
+    public void setP999Micros(double p999Micros) {
+      this.p999Micros = p999Micros;
+    }
+
+    public double getMaxMicros() {
+      return maxMicros;
+    }
+
+    public void setMaxMicros(double maxMicros) {
+      this.maxMicros = maxMicros;
+    }
+
+  }
+
+}
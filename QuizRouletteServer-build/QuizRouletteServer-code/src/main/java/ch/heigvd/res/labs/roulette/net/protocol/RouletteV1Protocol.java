@@ -22,6 +22,12 @@ public class RouletteV1Protocol {
   public final static String RESPONSE_LOAD_START = "Send your data [end with ENDOFDATA]";
   public final static String RESPONSE_LOAD_DONE = "DATA LOADED";
 
+  /*
+   * With LOAD <count>, the client announces the number of students it sends:
+   * exactly count lines follow, without the ENDOFDATA marker
+   */
+  public final static String RESPONSE_COUNTED_LOAD_START = "Send your data";
+
   public final static String[] SUPPORTED_COMMANDS = new String[]{CMD_HELP, CMD_RANDOM, CMD_LOAD, CMD_INFO, CMD_BYE};
 
 }
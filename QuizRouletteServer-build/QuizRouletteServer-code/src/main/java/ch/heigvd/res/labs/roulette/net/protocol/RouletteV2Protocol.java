@@ -12,9 +12,49 @@ public class RouletteV2Protocol extends RouletteV1Protocol {
 
   public final static String CMD_CLEAR = "CLEAR";
   public final static String CMD_LIST = "LIST";
+  public final static String CMD_METRICS = "METRICS";
+
+  /*
+   * IMPORT <path> loads a roster file of the server host, relative to the
+   * import directory of the server (the command fails if the server has none,
+   * or if it runs in non-blocking mode: reading a large file would stall the
+   * other connections of the event loop)
+   */
+  public final static String CMD_IMPORT = "IMPORT";
+
+  /*
+   * LIST IF-NONE-MATCH <version> answers NOT MODIFIED if the store still has
+   * the version, otherwise the students and the version of the store
+   */
+  public final static String LIST_IF_NONE_MATCH = "IF-NONE-MATCH";
+
+  /*
+   * LIST SINCE <version> answers the students added since the version (or all
+   * the students, flagged as a full snapshot, if the version is too old)
+   */
+  public final static String LIST_SINCE = "SINCE";
+
+  /*
+   * LIST PAGE <offset> <limit> answers at most limit students from the offset,
+   * and the cursor of the next page; LIST CURSOR <cursor> <limit> answers the
+   * next page, or CURSOR EXPIRED if the store has been cleared in the meantime
+   */
+  public final static String LIST_PAGE = "PAGE";
+  public final static String LIST_CURSOR = "CURSOR";
+  public final static int MAX_PAGE_SIZE = 100000;
+
+  /*
+   * LOAD PROGRESS works like LOAD, but the server sends a PROGRESS <count> line
+   * after every chunk of students it has imported, before the final response
+   * (the client must read them while it is sending its data)
+   */
+  public final static String LOAD_PROGRESS = "PROGRESS";
 
   public static String RESPONSE_CLEAR_DONE = "DATASTORE CLEARED";
+  public static String RESPONSE_NOT_MODIFIED = "NOT MODIFIED";
+  public static String RESPONSE_CURSOR_EXPIRED = "CURSOR EXPIRED";
+  public static String RESPONSE_LOAD_PROGRESS = "PROGRESS";
 
-  public final static String[] SUPPORTED_COMMANDS = new String[]{CMD_HELP, CMD_RANDOM, CMD_LOAD, CMD_INFO, CMD_BYE, CMD_CLEAR, CMD_LIST};
+  public final static String[] SUPPORTED_COMMANDS = new String[]{CMD_HELP, CMD_RANDOM, CMD_LOAD, CMD_INFO, CMD_BYE, CMD_CLEAR, CMD_LIST, CMD_METRICS, CMD_IMPORT};
 
 }
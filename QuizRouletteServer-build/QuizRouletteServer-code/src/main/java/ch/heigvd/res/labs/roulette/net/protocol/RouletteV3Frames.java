@@ -0,0 +1,110 @@
+package ch.heigvd.res.labs.roulette.net.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the fields of the Roulette Protocol (version 3): varints
+ * and length-prefixed UTF-8 names. The streams are expected to be buffered.
+ */
+public final class RouletteV3Frames {
+
+  private RouletteV3Frames() {
+  }
+
+  /**
+   * Writes a non-negative number as an unsigned varint.
+   *
+   * @param out where the number is written
+   * @param value the number
+   * @throws IOException
+   */
+  public static void writeVarint(OutputStream out, int value) throws IOException {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative varint: " + value);
+    }
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  /**
+   * Reads an unsigned varint.
+   *
+   * @param in where the number is read
+   * @return the number
+   * @throws IOException if the stream ends or the number does not fit in an int
+   */
+  public static int readVarint(InputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = readByte(in);
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (value < 0) {
+          break;
+        }
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  /**
+   * Reads a byte (e.g. an opcode or a status).
+   *
+   * @param in where the byte is read
+   * @return the byte, between 0 and 255
+   * @throws EOFException if the stream ends
+   */
+  public static int readByte(InputStream in) throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      throw new EOFException();
+    }
+    return b;
+  }
+
+  /**
+   * Writes a full name: its length in bytes, then its UTF-8 bytes.
+   *
+   * @param out where the name is written
+   * @param name the name
+   * @throws IOException
+   */
+  public static void writeString(OutputStream out, String name) throws IOException {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a full name.
+   *
+   * @param in where the name is read
+   * @return the name
+   * @throws IOException if the stream ends or the name is too long
+   */
+  public static String readString(InputStream in) throws IOException {
+    int length = readVarint(in);
+    if (length > RouletteV3Protocol.MAX_NAME_LENGTH) {
+      throw new IOException("Name too long: " + length + " bytes");
+    }
+    byte[] bytes = new byte[length];
+    int read = 0;
+    while (read < length) {
+      int n = in.read(bytes, read, length - read);
+      if (n < 0) {
+        throw new EOFException();
+      }
+      read += n;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
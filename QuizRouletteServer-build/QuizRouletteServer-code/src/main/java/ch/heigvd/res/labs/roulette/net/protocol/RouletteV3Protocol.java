@@ -0,0 +1,53 @@
+package ch.heigvd.res.labs.roulette.net.protocol;
+
+/**
+ * This class defines constants for the Roulette Protocol (version 3), a binary
+ * version of the protocol for high-volume clients.
+ *
+ * Every request starts with an opcode byte, every response with a status byte.
+ * Numbers are encoded as unsigned varints (7 bits per byte, least significant
+ * group first, the high bit set on all bytes but the last) and full names as a
+ * varint length followed by the UTF-8 bytes of the name (see
+ * RouletteV3Frames). When the connection is established, the server sends
+ * STATUS_OK followed by the version of the protocol.
+ *
+ * Requests and responses:
+ * - RANDOM: STATUS_OK name, or STATUS_EMPTY if there is no student
+ * - INFO: STATUS_OK version numberOfStudents
+ * - LOAD count name*count: STATUS_OK numberOfNewStudents
+ * - LIST: STATUS_OK, then chunks of students (count name*count) ending with an
+ *   empty chunk (count 0)
+ * - CLEAR: STATUS_OK
+ * - BYE: STATUS_OK numberOfCommands, then the server closes the connection
+ * - any other opcode: STATUS_UNKNOWN_OPCODE, then the server closes the
+ *   connection (it cannot find the next request)
+ */
+public class RouletteV3Protocol {
+
+  public final static String VERSION = "3.0";
+
+  public final static int DEFAULT_PORT = 3613;
+
+  public final static byte OP_RANDOM = 0x01;
+  public final static byte OP_INFO = 0x02;
+  public final static byte OP_LOAD = 0x03;
+  public final static byte OP_LIST = 0x04;
+  public final static byte OP_CLEAR = 0x05;
+  public final static byte OP_BYE = 0x06;
+
+  public final static byte STATUS_OK = 0x00;
+  public final static byte STATUS_EMPTY = 0x01;
+  public final static byte STATUS_UNKNOWN_OPCODE = 0x7F;
+
+  /*
+   * The maximum number of students of a chunk of a LIST response
+   */
+  public final static int LIST_CHUNK_SIZE = 1024;
+
+  /*
+   * The longest full name accepted, in bytes (longer ones are rejected instead
+   * of allocating a buffer of the announced size)
+   */
+  public final static int MAX_NAME_LENGTH = 1 << 20;
+
+}
@@ -0,0 +1,88 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class provides the execution strategies that the RouletteServer can use
+ * to run its ClientWorkers (in blocking mode). Pass one of them to
+ * RouletteServer.setWorkerExecutor() before starting the server.
+ */
+public final class ClientWorkerExecutors {
+
+  private ClientWorkerExecutors() {
+  }
+
+  /**
+   * One new platform thread per connection, which dies when the session is over
+   * (no reuse, no limit). This is the default strategy.
+   *
+   * @return an executor starting a new thread for each client worker
+   */
+  public static ExecutorService newThreadPerConnection() {
+    return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS,
+      new SynchronousQueue<Runnable>(), new WorkerThreadFactory());
+  }
+
+  /**
+   * A bounded pool of reusable platform threads. When all threads are busy, new
+   * connections wait in a queue (the client gets the greeting once a thread is
+   * available). When the queue is full, new connections are rejected and closed
+   * by the server.
+   *
+   * @param maxThreads the maximum number of sessions served concurrently
+   * @param queueCapacity the maximum number of sessions waiting for a thread
+   * @return an executor backed by a bounded thread pool
+   */
+  public static ExecutorService newBoundedPool(int maxThreads, int queueCapacity) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+      new ArrayBlockingQueue<Runnable>(queueCapacity), new WorkerThreadFactory());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * One virtual thread per connection. Virtual threads are cheap to create and
+   * to block, so thousands of sessions do not mean thousands of OS threads. They
+   * are only available when the server runs on Java 21 or later.
+   *
+   * @return an executor starting a new virtual thread for each client worker
+   * @throws UnsupportedOperationException if the JVM has no virtual threads
+   */
+  public static ExecutorService newVirtualThreadPerConnection() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later (running on "
+        + System.getProperty("java.version") + ")", ex);
+    }
+  }
+
+  /*
+   * Gives the worker threads a recognizable name (useful in thread dumps and
+   * profiles)
+   */
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final int poolNumber = POOL_NUMBER.incrementAndGet();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      return new Thread(r, "roulette-worker-" + poolNumber + "-" + threadNumber.incrementAndGet());
+    }
+
+  }
+
+}
@@ -0,0 +1,102 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import ch.heigvd.res.labs.roulette.net.protocol.MetricsCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.MetricsCommandResponse.CommandStatistics;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.AtomicHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Server-wide latency statistics, per command type. One instance is shared by
+ * all the client handlers of a server, which call record() after every
+ * command; the METRICS command returns a snapshot.
+ *
+ * Recording is on the hot path of every command, so it must be cheap: the
+ * histograms are pre-allocated AtomicHistograms (a fixed array of counters
+ * updated with atomic increments), so recording takes no lock and allocates
+ * nothing.
+ */
+public class CommandMetrics {
+
+  /*
+   * The command types we keep statistics for, in the order of the histograms
+   */
+  private static final String[] COMMANDS = new String[]{
+    RouletteV2Protocol.CMD_RANDOM,
+    RouletteV2Protocol.CMD_LOAD,
+    RouletteV2Protocol.CMD_LIST,
+    RouletteV2Protocol.CMD_INFO,
+    RouletteV2Protocol.CMD_CLEAR,
+    RouletteV2Protocol.CMD_HELP,
+    RouletteV2Protocol.CMD_IMPORT
+  };
+
+  /*
+   * Latencies are recorded in nanoseconds, from 1 microsecond to 1 hour, with 2
+   * significant digits (larger values are recorded as 1 hour)
+   */
+  private static final long LOWEST_LATENCY = TimeUnit.MICROSECONDS.toNanos(1);
+  private static final long HIGHEST_LATENCY = TimeUnit.HOURS.toNanos(1);
+
+  private final AtomicHistogram[] latencies = new AtomicHistogram[COMMANDS.length];
+
+  private final long startTime = System.nanoTime();
+
+  public CommandMetrics() {
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new AtomicHistogram(LOWEST_LATENCY, HIGHEST_LATENCY, 2);
+    }
+  }
+
+  /**
+   * Records the processing time of a command. Commands without statistics
+   * (e.g. BYE or unknown commands) are ignored.
+   *
+   * @param command the command, as sent by the client (case insensitive)
+   * @param durationNanos the processing time, in nanoseconds
+   */
+  public void record(String command, long durationNanos) {
+    for (int i = 0; i < COMMANDS.length; i++) {
+      if (isCommand(command, COMMANDS[i])) {
+        latencies[i].recordValue(Math.max(LOWEST_LATENCY, Math.min(durationNanos, HIGHEST_LATENCY)));
+        return;
+      }
+    }
+  }
+
+  /*
+   * The command name may be followed by arguments (e.g. LIST IF-NONE-MATCH 12)
+   */
+  private static boolean isCommand(String command, String name) {
+    return command.regionMatches(true, 0, name, 0, name.length())
+      && (command.length() == name.length() || command.charAt(name.length()) == ' ');
+  }
+
+  /**
+   * Takes a snapshot of the statistics of all command types. Commands recorded
+   * while the snapshot is taken may or may not be included.
+   *
+   * @return the statistics, ready to be serialized
+   */
+  public MetricsCommandResponse snapshot() {
+    MetricsCommandResponse response = new MetricsCommandResponse();
+    response.setUptimeSeconds(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime));
+    for (int i = 0; i < COMMANDS.length; i++) {
+      Histogram histogram = latencies[i].copy();
+      CommandStatistics statistics = new CommandStatistics();
+      statistics.setCount(histogram.getTotalCount());
+      if (histogram.getTotalCount() > 0) {
+        statistics.setMeanMicros(histogram.getMean() / 1000);
+        statistics.setP50Micros(histogram.getValueAtPercentile(50) / 1000.0);
+        statistics.setP90Micros(histogram.getValueAtPercentile(90) / 1000.0);
+        statistics.setP99Micros(histogram.getValueAtPercentile(99) / 1000.0);
+        statistics.setP999Micros(histogram.getValueAtPercentile(99.9) / 1000.0);
+        statistics.setMaxMicros(histogram.getMaxValue() / 1000.0);
+      }
+      response.getCommands().put(COMMANDS[i], statistics);
+    }
+    return response;
+  }
+
+}
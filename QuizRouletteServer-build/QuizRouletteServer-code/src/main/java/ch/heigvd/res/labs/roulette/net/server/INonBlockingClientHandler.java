@@ -0,0 +1,42 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This interface is the non-blocking counterpart of IClientHandler. When the
+ * server runs in non-blocking mode, a small number of event loop threads
+ * multiplex all client connections. The event loop reads the bytes sent by the
+ * client, splits them into lines and pushes every complete line to the handler.
+ * The handler must never block: it processes the line, writes the response in
+ * the output stream (which is an in-memory buffer drained by the event loop)
+ * and returns immediately.
+ *
+ * One instance is created for every connection, so implementations can keep
+ * the session state (e.g. "we are in the middle of a LOAD") in fields.
+ */
+public interface INonBlockingClientHandler {
+
+  /**
+   * Called once, when the connection has been accepted. Typically used to send
+   * a greeting message to the client.
+   *
+   * @param os output stream to send responses back to the client (the same
+   * instance is passed to every call for a given session)
+   * @throws IOException
+   */
+  public void handleSessionStart(OutputStream os) throws IOException;
+
+  /**
+   * Called for every complete line received from the client (without the line
+   * terminator).
+   *
+   * @param line the line sent by the client
+   * @param os output stream to send responses back to the client
+   * @return true if the session is over and the connection must be closed once
+   * the pending responses have been sent
+   * @throws IOException
+   */
+  public boolean handleLine(String line, OutputStream os) throws IOException;
+
+}
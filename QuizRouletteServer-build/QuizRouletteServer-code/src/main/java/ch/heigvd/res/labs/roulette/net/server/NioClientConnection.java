@@ -0,0 +1,144 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Instances of this class keep track of one client connection when the server
+ * runs in non-blocking mode. They play the role of the ClientWorker: they
+ * split the incoming bytes into lines, pass them to an INonBlockingClientHandler
+ * and send the responses back when the socket is ready to accept them. All
+ * methods are invoked by the event loop thread that owns the connection.
+ */
+class NioClientConnection {
+
+  static final Logger LOG = Logger.getLogger(NioClientConnection.class.getName());
+
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  /*
+   * Text-oriented handlers wrap streams with the platform default charset, so we
+   * decode the lines the same way
+   */
+  private static final Charset CHARSET = Charset.defaultCharset();
+
+  private final SocketChannel channel;
+  private final INonBlockingClientHandler handler;
+  private SelectionKey key;
+
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+  /*
+   * Bytes of the line currently being received (the line terminator has not
+   * arrived yet)
+   */
+  private final ByteArrayOutputStream currentLine = new ByteArrayOutputStream();
+  private boolean lastByteWasCarriageReturn = false;
+
+  /*
+   * The handler writes its responses in this buffer; they are moved to the
+   * write queue after every batch of lines
+   */
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private final Deque<ByteBuffer> writeQueue = new ArrayDeque<>();
+
+  /*
+   * Set when the handler has ended the session: we stop reading and close the
+   * connection as soon as the write queue is empty
+   */
+  private boolean sessionDone = false;
+
+  NioClientConnection(SocketChannel channel, INonBlockingClientHandler handler) {
+    this.channel = channel;
+    this.handler = handler;
+  }
+
+  void start(SelectionKey key) throws IOException {
+    this.key = key;
+    handler.handleSessionStart(output);
+    flushOutput();
+  }
+
+  /**
+   * Reads what the client has sent, dispatches complete lines to the handler and
+   * tries to send the responses immediately.
+   */
+  void handleReadable() throws IOException {
+    readBuffer.clear();
+    int read = channel.read(readBuffer);
+    if (read == -1) {
+      close();
+      return;
+    }
+    readBuffer.flip();
+    while (readBuffer.hasRemaining() && !sessionDone) {
+      byte b = readBuffer.get();
+      if (b == '\n' && lastByteWasCarriageReturn) {
+        lastByteWasCarriageReturn = false;
+      } else if (b == '\n' || b == '\r') {
+        lastByteWasCarriageReturn = (b == '\r');
+        String line = new String(currentLine.toByteArray(), CHARSET);
+        currentLine.reset();
+        sessionDone = handler.handleLine(line, output);
+      } else {
+        lastByteWasCarriageReturn = false;
+        currentLine.write(b);
+      }
+    }
+    flushOutput();
+  }
+
+  void handleWritable() throws IOException {
+    writePending();
+  }
+
+  /**
+   * Moves the responses produced by the handler to the write queue and sends as
+   * much as the socket accepts.
+   */
+  private void flushOutput() throws IOException {
+    if (output.size() > 0) {
+      writeQueue.add(ByteBuffer.wrap(output.toByteArray()));
+      output.reset();
+    }
+    writePending();
+  }
+
+  private void writePending() throws IOException {
+    while (!writeQueue.isEmpty()) {
+      ByteBuffer buffer = writeQueue.peek();
+      channel.write(buffer);
+      if (buffer.hasRemaining()) {
+        // the socket send buffer is full, wait until the selector tells us it has room
+        key.interestOps(SelectionKey.OP_WRITE);
+        return;
+      }
+      writeQueue.poll();
+    }
+    if (sessionDone) {
+      close();
+    } else {
+      key.interestOps(SelectionKey.OP_READ);
+    }
+  }
+
+  void close() {
+    if (key != null) {
+      key.cancel();
+    }
+    try {
+      channel.close();
+    } catch (IOException ex) {
+      LOG.log(Level.INFO, "Exception while closing socket on the server: {0}", ex.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,125 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An event loop used when the server runs in non-blocking mode. Each loop owns a
+ * Selector and runs on its own thread. The acceptor thread of the RouletteServer
+ * hands over the accepted connections to the loops (round-robin); from then on,
+ * all the I/O of a connection is done by the thread of its loop. This is how a
+ * handful of threads can serve thousands of clients.
+ */
+class NioEventLoop implements Runnable {
+
+  static final Logger LOG = Logger.getLogger(NioEventLoop.class.getName());
+
+  private final RouletteServer server;
+  private final Selector selector;
+
+  /*
+   * Channels accepted by the acceptor thread, waiting to be registered with the
+   * selector by the loop thread (registering from another thread would block
+   * while the loop is in select())
+   */
+  private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean shouldRun = true;
+
+  NioEventLoop(RouletteServer server) throws IOException {
+    this.server = server;
+    this.selector = Selector.open();
+  }
+
+  /**
+   * Hands over a newly accepted connection to this loop. Can be called from any
+   * thread.
+   *
+   * @param channel the channel connected to the client
+   * @throws IOException
+   */
+  void register(SocketChannel channel) throws IOException {
+    channel.configureBlocking(false);
+    pendingChannels.add(channel);
+    selector.wakeup();
+  }
+
+  /**
+   * Stops the loop and closes all the connections it owns.
+   */
+  void shutdown() {
+    shouldRun = false;
+    selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (shouldRun) {
+        selector.select();
+        registerPendingChannels();
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          SelectionKey key = it.next();
+          it.remove();
+          NioClientConnection connection = (NioClientConnection) key.attachment();
+          try {
+            if (key.isReadable()) {
+              connection.handleReadable();
+            } else if (key.isWritable()) {
+              connection.handleWritable();
+            }
+          } catch (IOException | RuntimeException ex) {
+            LOG.log(Level.SEVERE, "Exception in client handler: {0}", ex.getMessage());
+            connection.close();
+          }
+        }
+      }
+    } catch (IOException | ClosedSelectorException ex) {
+      LOG.log(Level.SEVERE, "Exception in event loop, exit: {0}", ex.getMessage());
+    } finally {
+      closeAll();
+    }
+  }
+
+  private void registerPendingChannels() {
+    SocketChannel channel;
+    while ((channel = pendingChannels.poll()) != null) {
+      NioClientConnection connection = new NioClientConnection(channel, server.getNonBlockingClientHandler());
+      try {
+        connection.start(channel.register(selector, SelectionKey.OP_READ, connection));
+      } catch (IOException ex) {
+        LOG.log(Level.SEVERE, "Exception while starting client session: {0}", ex.getMessage());
+        connection.close();
+      }
+    }
+  }
+
+  private void closeAll() {
+    SocketChannel channel;
+    while ((channel = pendingChannels.poll()) != null) {
+      try {
+        channel.close();
+      } catch (IOException ex) {
+        LOG.log(Level.INFO, ex.getMessage());
+      }
+    }
+    try {
+      for (SelectionKey key : selector.keys()) {
+        ((NioClientConnection) key.attachment()).close();
+      }
+      selector.close();
+    } catch (IOException | ClosedSelectorException ex) {
+      LOG.log(Level.INFO, ex.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The output stream of a session in blocking mode, queuing the responses of
+ * pipelined commands.
+ *
+ * Flushing this stream (e.g. when a handler flushes its writer after a
+ * response) does not send anything: the responses stay in the buffer until
+ * send() is called, which the handlers do when they have processed every
+ * command already received. A client sending several commands at once thus
+ * gets all the responses in a single write. A response larger than the buffer
+ * is written through, in order.
+ */
+class PipelinedResponseStream extends BufferedOutputStream {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  PipelinedResponseStream(OutputStream out) {
+    super(out, BUFFER_SIZE);
+  }
+
+  /**
+   * Keeps the responses in the buffer (see send())
+   */
+  @Override
+  public void flush() {
+  }
+
+  /**
+   * Sends the queued responses to the client.
+   *
+   * @throws IOException
+   */
+  public void send() throws IOException {
+    super.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    send();
+    super.close();
+  }
+
+}
@@ -0,0 +1,149 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import ch.heigvd.res.labs.roulette.data.IStudentsStore;
+import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
+import ch.heigvd.res.labs.roulette.data.VersionedStudents;
+import ch.heigvd.res.labs.roulette.net.protocol.InfoCommandResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the encoded responses to INFO and LIST, so that clients polling an
+ * unchanged roster do not serialize it again and again. The responses are
+ * tagged with the version of the store they have been built from: they are
+ * served as long as the store has the same version, and dropped by the first
+ * lookup (or by invalidate()) after a change.
+ *
+ * The bytes are encoded like the handlers encode their responses (default
+ * charset, terminated by the line separator), so they can be written as is on
+ * the output stream of a session. LIST responses are only cached for rosters of
+ * at most maxCachedStudents students: larger ones are streamed.
+ */
+public class ResponseCache {
+
+  /**
+   * The default maximum number of students of a cached LIST response
+   */
+  public static final int DEFAULT_MAX_CACHED_STUDENTS = 100000;
+
+  private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+  private static final class Entry {
+
+    final long version;
+    final byte[] bytes;
+
+    Entry(long version, byte[] bytes) {
+      this.version = version;
+      this.bytes = bytes;
+    }
+  }
+
+  private final IStudentsStore store;
+  private final String protocolVersion;
+  private final int maxCachedStudents;
+
+  private final AtomicReference<Entry> infoResponse = new AtomicReference<>();
+  private final AtomicReference<Entry> listResponse = new AtomicReference<>();
+  private final AtomicReference<Entry> versionedListResponse = new AtomicReference<>();
+
+  public ResponseCache(IStudentsStore store, String protocolVersion) {
+    this(store, protocolVersion, DEFAULT_MAX_CACHED_STUDENTS);
+  }
+
+  /**
+   * @param store the store the responses are built from
+   * @param protocolVersion the version announced in the INFO response
+   * @param maxCachedStudents the maximum number of students of a cached LIST
+   * response
+   */
+  public ResponseCache(IStudentsStore store, String protocolVersion, int maxCachedStudents) {
+    this.store = store;
+    this.protocolVersion = protocolVersion;
+    this.maxCachedStudents = maxCachedStudents;
+  }
+
+  /**
+   * @return the encoded response to INFO for the current content of the store
+   * @throws IOException
+   */
+  public byte[] getInfoResponse() throws IOException {
+    // the version is read first: the content read afterwards is at least as recent
+    long version = store.getVersion();
+    Entry entry = infoResponse.get();
+    if (entry != null && entry.version == version) {
+      return entry.bytes;
+    }
+    String json = JsonObjectMapper.toJson(new InfoCommandResponse(protocolVersion, store.getNumberOfStudents()));
+    return update(infoResponse, entry, new Entry(version, encodeLine(json)));
+  }
+
+  /**
+   * @return the encoded response to LIST for the current content of the store,
+   * or null if there are too many students to cache it
+   * @throws IOException
+   */
+  public byte[] getListResponse() throws IOException {
+    return getListResponse(listResponse, false);
+  }
+
+  /**
+   * @return the encoded response to a conditional LIST (which includes the
+   * version of the store) for the current content of the store, or null if
+   * there are too many students to cache it
+   * @throws IOException
+   */
+  public byte[] getVersionedListResponse() throws IOException {
+    return getListResponse(versionedListResponse, true);
+  }
+
+  private byte[] getListResponse(AtomicReference<Entry> cached, boolean versioned) throws IOException {
+    Entry entry = cached.get();
+    if (entry != null && entry.version == store.getVersion()) {
+      return entry.bytes;
+    }
+    if (store.getNumberOfStudents() > maxCachedStudents) {
+      cached.compareAndSet(entry, null);
+      return null;
+    }
+    // the students and their version must be read together: a LOAD between
+    // the two reads would tag the list with a version older than its content
+    VersionedStudents snapshot = store.versionedSnapshotStudents();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Writer writer = new OutputStreamWriter(bytes);
+    JsonObjectMapper.writeStudentsList(snapshot.getStudents(), versioned ? snapshot.getVersion() : null, writer);
+    writer.flush();
+    bytes.write(LINE_SEPARATOR);
+    return update(cached, entry, new Entry(snapshot.getVersion(), bytes.toByteArray()));
+  }
+
+  /**
+   * Drops the cached responses (e.g. right after a change of the store, to
+   * release their memory before the next lookup).
+   */
+  public void invalidate() {
+    infoResponse.set(null);
+    listResponse.set(null);
+    versionedListResponse.set(null);
+  }
+
+  private static byte[] encodeLine(String line) {
+    byte[] text = line.getBytes();
+    byte[] result = new byte[text.length + LINE_SEPARATOR.length];
+    System.arraycopy(text, 0, result, 0, text.length);
+    System.arraycopy(LINE_SEPARATOR, 0, result, text.length, LINE_SEPARATOR.length);
+    return result;
+  }
+
+  private static byte[] update(AtomicReference<Entry> cached, Entry expected, Entry built) {
+    // another session may have cached a more recent response in the meantime: keep it
+    if (expected == null || expected.version < built.version) {
+      cached.compareAndSet(expected, built);
+    }
+    return built.bytes;
+  }
+
+}
@@ -1,24 +1,34 @@
 package ch.heigvd.res.labs.roulette.net.server;
 
 import ch.heigvd.res.labs.roulette.data.IStudentsStore;
-import ch.heigvd.res.labs.roulette.data.StudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.IndexedStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.StudentsFileImporter;
+import ch.heigvd.res.labs.roulette.data.StudentsSnapshotter;
 import ch.heigvd.res.labs.roulette.net.protocol.RouletteV1Protocol;
 import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV3Protocol;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This class implements the main logic of the RouletteServer. It starts a loop
  * to accept incoming connections on a TCP port. When a new connection request
- * is made by a client, the server spawns a new thread. It instantiates a client
- * handler, to which it delegates the processing of the session (the client
- * handler executes on the thread).
+ * is made by a client, the server instantiates a client handler, to which it
+ * delegates the processing of the session. The client handler executes on a
+ * thread provided by the worker executor (by default, a new thread for every
+ * connection; see ClientWorkerExecutors for the other strategies).
  *
  * It is possible to either create an instance of the RouletteServer by
  * specifying an explicit TCP port (typically, the default port defined in the
@@ -28,6 +38,11 @@ import java.util.logging.Logger;
  * the context of automated tests (which may execute in parallel and therefore
  * need "isolated" servers).
  *
+ * The server can also run in non-blocking mode (see ServerMode). In this case,
+ * the accepted connections are not given a thread each, but are distributed
+ * among a small fixed set of event loops (NioEventLoop), which multiplex them
+ * with a java.nio Selector.
+ *
  * @author Olivier Liechti
  */
 public class RouletteServer {
@@ -45,16 +60,65 @@ public class RouletteServer {
    */
   private ServerSocket serverSocket;
 
+  /*
+   * The channel of the server socket, only used in non-blocking mode
+   */
+  private ServerSocketChannel serverChannel;
+
+  /*
+   * The I/O model used to serve the clients
+   */
+  private final ServerMode mode;
+
+  /*
+   * In non-blocking mode, the number of event loop threads and the loops
+   * themselves
+   */
+  private int eventLoopThreads = Runtime.getRuntime().availableProcessors();
+  private NioEventLoop[] eventLoops;
+
   /*
    * The server maintains a list of client workers, so that they can be notified
    * when the server shuts down
    */
   List<ClientWorker> clientWorkers = new CopyOnWriteArrayList<>();
 
+  /*
+   * In blocking mode, the executor which runs the client workers, and whether
+   * the server has created it (and must shut it down)
+   */
+  private ExecutorService workerExecutor;
+  private boolean ownsWorkerExecutor = false;
+
   /*
    * The server uses a data store to keep track of students
    */
-  IStudentsStore store = new StudentsStoreImpl();
+  IStudentsStore store = new IndexedStudentsStoreImpl();
+
+  /*
+   * Latency statistics of the commands processed by all client handlers
+   */
+  private final CommandMetrics metrics = new CommandMetrics();
+
+  /*
+   * The encoded INFO and LIST responses, shared by all client handlers (created
+   * when the server starts, once the store is known)
+   */
+  private ResponseCache responses;
+
+  /*
+   * The directory of the roster files which clients may load with IMPORT (null
+   * if the command is disabled), and the importer reading them
+   */
+  private Path importDirectory;
+  private final StudentsFileImporter fileImporter = new StudentsFileImporter();
+
+  /*
+   * Where the store is periodically saved (null if it is not), and how often
+   */
+  private Path snapshotFile;
+  private long snapshotPeriodSeconds;
+  private StudentsSnapshotter snapshotter;
 
   /*
    * A flag that indicates whether the server should continue to run (or whether
@@ -71,8 +135,20 @@ public class RouletteServer {
    * @param listenPort the TCP port on which connection requests are accepted
    */
   public RouletteServer(int listenPort, String protocolVersion) {
+    this(listenPort, protocolVersion, ServerMode.BLOCKING);
+  }
+
+  /**
+   * Constructor used to create a server that will accept connections on a known
+   * TCP port, with the specified I/O model
+   *
+   * @param listenPort the TCP port on which connection requests are accepted
+   * @param mode blocking (thread per connection) or non-blocking (event loops)
+   */
+  public RouletteServer(int listenPort, String protocolVersion, ServerMode mode) {
     this.listenPort = listenPort;
     this.protocolVersion = protocolVersion;
+    this.mode = mode;
   }
 
   /**
@@ -80,12 +156,116 @@ public class RouletteServer {
    * ephemeral port
    */
   public RouletteServer(String protocolVersion) {
-    this.listenPort = -1;
-    this.protocolVersion = protocolVersion;
+    this(-1, protocolVersion, ServerMode.BLOCKING);
+  }
+
+  /**
+   * Constructor used to create a server that will accept connections on an
+   * ephemeral port, with the specified I/O model
+   */
+  public RouletteServer(String protocolVersion, ServerMode mode) {
+    this(-1, protocolVersion, mode);
+  }
+
+  /**
+   * Sets the number of event loop threads used in non-blocking mode. Must be
+   * called before the server is started.
+   *
+   * @param eventLoopThreads the number of event loops (defaults to the number of
+   * available processors)
+   */
+  public void setEventLoopThreads(int eventLoopThreads) {
+    if (eventLoopThreads < 1) {
+      throw new IllegalArgumentException("At least one event loop thread is required");
+    }
+    this.eventLoopThreads = eventLoopThreads;
+  }
+
+  /**
+   * Sets the execution strategy used to run the client workers in blocking mode
+   * (see ClientWorkerExecutors). Must be called before the server is started.
+   * The executor belongs to the caller, who shuts it down: the server only
+   * shuts down the default executor it creates when none is set, so it can be
+   * stopped and started again.
+   *
+   * @param workerExecutor the executor running the client workers
+   */
+  public void setWorkerExecutor(ExecutorService workerExecutor) {
+    this.workerExecutor = workerExecutor;
+  }
+
+  /**
+   * Sets the data store used by the server (by default, an in-memory
+   * IndexedStudentsStoreImpl). Must be called before the server is started.
+   *
+   * @param store the store shared by all client sessions
+   */
+  public void setStore(IStudentsStore store) {
+    this.store = store;
+  }
+
+  /**
+   * Enables the IMPORT command (protocol version 2) for the roster files of a
+   * directory of the server host and its subdirectories. Clients cannot import
+   * other files. Must be called before the server is started, and only in
+   * blocking mode (an import would stall the event loop of the connection).
+   *
+   * @param importDirectory the directory of the files which clients may import
+   */
+  public void setImportDirectory(Path importDirectory) {
+    this.importDirectory = importDirectory;
+  }
+
+  /**
+   * Loads a roster file of the server host into the store (see
+   * StudentsFileImporter), e.g. before the server is started.
+   *
+   * @param file the roster file, one full name per line
+   * @return the number of students added to the store
+   * @throws IOException if the file cannot be read
+   */
+  public int importFile(Path file) throws IOException {
+    int numberOfStudents = fileImporter.importFile(store, file);
+    if (responses != null) {
+      responses.invalidate();
+    }
+    return numberOfStudents;
+  }
+
+  /**
+   * Makes the server save its store to a roster file periodically (see
+   * StudentsSnapshotter), and when it is stopped. When the server starts with
+   * an empty store, it restores the students of the file. Must be called
+   * before the server is started.
+   *
+   * @param snapshotFile the roster file
+   * @param periodSeconds the time between two snapshots, in seconds (0 to
+   * only write one when the server is stopped)
+   */
+  public void setSnapshotFile(Path snapshotFile, long periodSeconds) {
+    if (periodSeconds < 0) {
+      throw new IllegalArgumentException("The period of the snapshots cannot be negative: " + periodSeconds);
+    }
+    this.snapshotFile = snapshotFile;
+    this.snapshotPeriodSeconds = periodSeconds;
   }
 
   public void startServer() throws IOException {
-    if (serverSocket == null || serverSocket.isBound() == false) {
+    if (mode == ServerMode.NON_BLOCKING && RouletteV3Protocol.VERSION.equals(protocolVersion)) {
+      throw new IllegalStateException("The protocol version 3 is only served in blocking mode");
+    }
+    if (mode == ServerMode.NON_BLOCKING && importDirectory != null) {
+      throw new IllegalStateException("The IMPORT command is only served in blocking mode");
+    }
+    if (snapshotFile != null && snapshotter == null) {
+      snapshotter = new StudentsSnapshotter(store, snapshotFile);
+      if (store.getNumberOfStudents() == 0) {
+        snapshotter.restore();
+      }
+      snapshotter.start(snapshotPeriodSeconds, TimeUnit.SECONDS);
+    }
+    responses = new ResponseCache(store, protocolVersion);
+    if (serverSocket == null || serverSocket.isBound() == false || serverSocket.isClosed()) {
       if (listenPort == -1) {
         bindOnEphemeralPort();
       } else {
@@ -93,6 +273,16 @@ public class RouletteServer {
       }
     }
 
+    if (mode == ServerMode.NON_BLOCKING) {
+      startNonBlockingServer();
+      return;
+    }
+
+    if (workerExecutor == null) {
+      workerExecutor = ClientWorkerExecutors.newThreadPerConnection();
+      ownsWorkerExecutor = true;
+    }
+
     Thread serverThread = new Thread(new Runnable() {
       @Override
       public void run() {
@@ -105,8 +295,48 @@ public class RouletteServer {
             ClientWorker worker = new ClientWorker(clientSocket, getClientHandler(), RouletteServer.this);
             clientWorkers.add(worker);
             LOG.info("Delegating work to client worker...");
-            Thread clientThread = new Thread(worker);
-            clientThread.start();
+            try {
+              workerExecutor.execute(worker);
+            } catch (RejectedExecutionException ex) {
+              LOG.log(Level.WARNING, "Too many clients, closing connection from {0}", clientSocket.getRemoteSocketAddress());
+              clientWorkers.remove(worker);
+              worker.notifyServerShutdown();
+            }
+          } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "IOException in main server thread, exit: {0}", ex.getMessage());
+            shouldRun = false;
+          }
+        }
+      }
+    });
+    serverThread.start();
+  }
+
+  /*
+   * In non-blocking mode, the server thread only accepts connections and hands
+   * them over to the event loops, which do all the I/O.
+   */
+  private void startNonBlockingServer() throws IOException {
+    eventLoops = new NioEventLoop[eventLoopThreads];
+    for (int i = 0; i < eventLoops.length; i++) {
+      eventLoops[i] = new NioEventLoop(this);
+      Thread loopThread = new Thread(eventLoops[i], "roulette-event-loop-" + i);
+      loopThread.setDaemon(true);
+      loopThread.start();
+    }
+
+    Thread serverThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        shouldRun = true;
+        int next = 0;
+        while (shouldRun) {
+          try {
+            LOG.log(Level.INFO, "Listening for client connection on {0}", serverSocket.getLocalSocketAddress());
+            SocketChannel clientChannel = serverChannel.accept();
+            LOG.info("New client has arrived, delegating work to event loop...");
+            eventLoops[next].register(clientChannel);
+            next = (next + 1) % eventLoops.length;
           } catch (IOException ex) {
             LOG.log(Level.SEVERE, "IOException in main server thread, exit: {0}", ex.getMessage());
             shouldRun = false;
@@ -120,11 +350,25 @@ public class RouletteServer {
   private IClientHandler getClientHandler() {
     switch (protocolVersion) {
       case RouletteV1Protocol.VERSION:
-        return new RouletteV1ClientHandler(store);
+        return new RouletteV1ClientHandler(store, metrics, responses);
       case RouletteV2Protocol.VERSION:
-        return new RouletteV2ClientHandler(store);
+        RouletteV2ClientHandler handler = new RouletteV2ClientHandler(store, metrics, responses);
+        handler.setImportDirectory(importDirectory, fileImporter);
+        return handler;
+      case RouletteV3Protocol.VERSION:
+        return new RouletteV3ClientHandler(store, metrics, responses);
     }
-    return new RouletteV1ClientHandler(store);
+    return new RouletteV1ClientHandler(store, metrics, responses);
+  }
+
+  /**
+   * Creates the handler for a new session in non-blocking mode. This method is
+   * invoked by the event loops.
+   *
+   * @return a new handler for the protocol version of the server
+   */
+  INonBlockingClientHandler getNonBlockingClientHandler() {
+    return (INonBlockingClientHandler) getClientHandler();
   }
 
   /**
@@ -158,17 +402,51 @@ public class RouletteServer {
     for (ClientWorker clientWorker : clientWorkers) {
       clientWorker.notifyServerShutdown();
     }
+    if (ownsWorkerExecutor) {
+      // a new one is created if the server is started again
+      workerExecutor.shutdown();
+      workerExecutor = null;
+      ownsWorkerExecutor = false;
+    }
+    if (eventLoops != null) {
+      for (NioEventLoop eventLoop : eventLoops) {
+        eventLoop.shutdown();
+      }
+    }
+    if (snapshotter != null) {
+      snapshotter.close();
+      snapshotter = null;
+    }
   }
 
   private void bindOnKnownPort(int port) throws IOException {
-    serverSocket = new ServerSocket();
+    serverSocket = createServerSocket();
     serverSocket.bind(new InetSocketAddress(port));
   }
 
   private void bindOnEphemeralPort() throws IOException {
-    serverSocket = new ServerSocket();
+    serverSocket = createServerSocket();
+    // listenPort stays -1: if the server is started again, the port of this
+    // run may not be released yet, so it binds on a new ephemeral port
     serverSocket.bind(null);
-    this.listenPort = serverSocket.getLocalPort();
+  }
+
+  /*
+   * In non-blocking mode, the server socket is obtained from a channel (it is
+   * still used to bind and to query the port)
+   */
+  private ServerSocket createServerSocket() throws IOException {
+    ServerSocket socket;
+    if (mode == ServerMode.NON_BLOCKING) {
+      serverChannel = ServerSocketChannel.open();
+      socket = serverChannel.socket();
+    } else {
+      socket = new ServerSocket();
+    }
+    // a restarted server binds its port again, while the connections of the
+    // previous run may still be in TIME_WAIT
+    socket.setReuseAddress(true);
+    return socket;
   }
 
   /**
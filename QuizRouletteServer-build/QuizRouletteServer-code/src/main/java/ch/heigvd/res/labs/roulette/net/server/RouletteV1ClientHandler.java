@@ -4,7 +4,9 @@ import ch.heigvd.res.labs.roulette.net.protocol.RouletteV1Protocol;
 import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
 import ch.heigvd.res.labs.roulette.data.IStudentsStore;
 import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
-import ch.heigvd.res.labs.roulette.net.protocol.InfoCommandResponse;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsImport;
+import ch.heigvd.res.labs.roulette.logging.SampledLogger;
 import ch.heigvd.res.labs.roulette.net.protocol.RandomCommandResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -22,65 +24,232 @@ import java.util.logging.Logger;
  *
  * @author Olivier Liechti
  */
-public class RouletteV1ClientHandler implements IClientHandler {
+public class RouletteV1ClientHandler implements IClientHandler, INonBlockingClientHandler {
 
   final static Logger LOG = Logger.getLogger(RouletteV1ClientHandler.class.getName());
 
+  /*
+   * Commands are logged on the hot path: sample them and limit their rate
+   */
+  static final SampledLogger COMMAND_LOG = new SampledLogger(LOG, "command", 1, 1000);
+
   private final IStudentsStore store;
 
+  private final CommandMetrics metrics;
+
+  private final ResponseCache responses;
+
+  /*
+   * Session state, only used in non-blocking mode: the writer wrapping the
+   * connection output buffer and the import started by the last LOAD command
+   * (null when we are not loading data)
+   */
+  private PrintWriter nonBlockingWriter;
+  private StudentsImport currentImport;
+  private int remainingToLoad;
+  private long loadStartTime;
+
   public RouletteV1ClientHandler(IStudentsStore store) {
+    this(store, new CommandMetrics());
+  }
+
+  /**
+   * @param store the store shared by all client sessions
+   * @param metrics where the processing time of every command is recorded
+   */
+  public RouletteV1ClientHandler(IStudentsStore store, CommandMetrics metrics) {
+    this(store, metrics, new ResponseCache(store, RouletteV1Protocol.VERSION));
+  }
+
+  /**
+   * @param store the store shared by all client sessions
+   * @param metrics where the processing time of every command is recorded
+   * @param responses the encoded responses shared by all client sessions
+   */
+  public RouletteV1ClientHandler(IStudentsStore store, CommandMetrics metrics, ResponseCache responses) {
     this.store = store;
+    this.metrics = metrics;
+    this.responses = responses;
   }
 
+  /**
+   * Serves the commands of a client in blocking mode. The commands already
+   * received are all processed before the queued responses are sent (see
+   * PipelinedResponseStream), so a client pipelining its commands gets their
+   * responses in a single write.
+   */
   @Override
   public void handleClientConnection(InputStream is, OutputStream os) throws IOException {
     BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-    PrintWriter writer = new PrintWriter(new OutputStreamWriter(os));
+    PipelinedResponseStream out = new PipelinedResponseStream(os);
+    PrintWriter writer = new PrintWriter(new OutputStreamWriter(out));
 
     writer.println("Hello. Online HELP is available. Will you find it?");
     writer.flush();
+    out.send();
 
     String command;
     boolean done = false;
     while (!done && ((command = reader.readLine()) != null)) {
-      LOG.log(Level.INFO, "COMMAND: {0}", command);
-      switch (command.toUpperCase()) {
-        case RouletteV1Protocol.CMD_RANDOM:
-          RandomCommandResponse rcResponse = new RandomCommandResponse();
-          try {
-            rcResponse.setFullname(store.pickRandomStudent().getFullname());
-          } catch (EmptyStoreException ex) {
-            rcResponse.setError("There is no student, you cannot pick a random one");
-          }
-          writer.println(JsonObjectMapper.toJson(rcResponse));
-          writer.flush();
-          break;
-        case RouletteV1Protocol.CMD_HELP:
-          writer.println("Commands: " + Arrays.toString(RouletteV1Protocol.SUPPORTED_COMMANDS));
-          break;
-        case RouletteV1Protocol.CMD_INFO:
-          InfoCommandResponse response = new InfoCommandResponse(RouletteV1Protocol.VERSION, store.getNumberOfStudents());
-          writer.println(JsonObjectMapper.toJson(response));
-          writer.flush();
-          break;
-        case RouletteV1Protocol.CMD_LOAD:
-          writer.println(RouletteV1Protocol.RESPONSE_LOAD_START);
-          writer.flush();
-          store.importData(reader);
-          writer.println(RouletteV1Protocol.RESPONSE_LOAD_DONE);
-          writer.flush();
-          break;
-        case RouletteV1Protocol.CMD_BYE:
-          done = true;
-          break;
-        default:
-          writer.println("Huh? please use HELP if you don't know what commands are available.");
-          writer.flush();
-          break;
+      COMMAND_LOG.log(Level.INFO, "COMMAND: {0}", command);
+      long startTime = System.nanoTime();
+      int count = parseLoadCount(command);
+      if (RouletteV1Protocol.CMD_LOAD.equalsIgnoreCase(command)) {
+        writer.println(RouletteV1Protocol.RESPONSE_LOAD_START);
+        sendIfDrained(reader, writer, out);
+        store.importData(reader);
+        responses.invalidate();
+        writer.println(RouletteV1Protocol.RESPONSE_LOAD_DONE);
+      } else if (count >= 0) {
+        writer.println(RouletteV1Protocol.RESPONSE_COUNTED_LOAD_START);
+        sendIfDrained(reader, writer, out);
+        store.importData(reader, count);
+        responses.invalidate();
+        writer.println(RouletteV1Protocol.RESPONSE_LOAD_DONE);
+      } else {
+        done = executeCommand(command, writer, out);
+      }
+      if (done) {
+        writer.flush();
+        out.send();
+      } else {
+        sendIfDrained(reader, writer, out);
+      }
+      metrics.record(command, System.nanoTime() - startTime);
+    }
+    writer.flush();
+    out.send();
+  }
+
+  /**
+   * Sends the queued responses, unless the client has already sent more
+   * commands (or data): they are processed first.
+   *
+   * @param reader where the commands of the client are read
+   * @param writer where the responses are written
+   * @param out the stream wrapped by the writer
+   * @throws IOException
+   */
+  static void sendIfDrained(BufferedReader reader, PrintWriter writer, PipelinedResponseStream out) throws IOException {
+    writer.flush();
+    if (!reader.ready()) {
+      out.send();
+    }
+  }
+
+  @Override
+  public void handleSessionStart(OutputStream os) throws IOException {
+    nonBlockingWriter = new PrintWriter(new OutputStreamWriter(os));
+    nonBlockingWriter.println("Hello. Online HELP is available. Will you find it?");
+    nonBlockingWriter.flush();
+  }
+
+  @Override
+  public boolean handleLine(String line, OutputStream os) throws IOException {
+    boolean done = false;
+    if (currentImport != null) {
+      if (remainingToLoad < 0 && line.equalsIgnoreCase(RouletteV1Protocol.CMD_LOAD_ENDOFDATA_MARKER)) {
+        commitLoad();
+      } else {
+        currentImport.addStudent(new Student(line));
+        if (--remainingToLoad == 0) {
+          commitLoad();
+        }
+      }
+    } else {
+      COMMAND_LOG.log(Level.INFO, "COMMAND: {0}", line);
+      int count = parseLoadCount(line);
+      if (RouletteV1Protocol.CMD_LOAD.equalsIgnoreCase(line)) {
+        nonBlockingWriter.println(RouletteV1Protocol.RESPONSE_LOAD_START);
+        currentImport = store.beginImport(-1, null);
+        remainingToLoad = -1;
+        loadStartTime = System.nanoTime();
+      } else if (count >= 0) {
+        nonBlockingWriter.println(RouletteV1Protocol.RESPONSE_COUNTED_LOAD_START);
+        currentImport = store.beginImport(count, null);
+        remainingToLoad = count;
+        loadStartTime = System.nanoTime();
+        if (count == 0) {
+          commitLoad();
+        }
+      } else {
+        long startTime = System.nanoTime();
+        done = executeCommand(line, nonBlockingWriter, os);
+        metrics.record(line, System.nanoTime() - startTime);
       }
-      writer.flush();
     }
+    nonBlockingWriter.flush();
+    return done;
+  }
+
+  /*
+   * Non-blocking mode: finishes the import started by the LOAD command
+   */
+  private void commitLoad() {
+    currentImport.finish();
+    responses.invalidate();
+    currentImport = null;
+    nonBlockingWriter.println(RouletteV1Protocol.RESPONSE_LOAD_DONE);
+    metrics.record(RouletteV1Protocol.CMD_LOAD, System.nanoTime() - loadStartTime);
+  }
+
+  /**
+   * Parses the counted form of the LOAD command (LOAD followed by the number of
+   * students which will be sent).
+   *
+   * @param command the command sent by the client
+   * @return the announced number of students, or -1 if the command is not a
+   * valid counted LOAD
+   */
+  static int parseLoadCount(String command) {
+    String prefix = RouletteV1Protocol.CMD_LOAD + " ";
+    if (!command.regionMatches(true, 0, prefix, 0, prefix.length())) {
+      return -1;
+    }
+    try {
+      return Math.max(-1, Integer.parseInt(command.substring(prefix.length()).trim()));
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+  }
 
+  /**
+   * Processes the commands which do not change the session state (i.e. all
+   * commands but LOAD), the same way in blocking and in non-blocking mode.
+   * The response may be left in the writer: the caller flushes it.
+   *
+   * @param command the command sent by the client
+   * @param writer where to send the response
+   * @param os the stream wrapped by the writer, where cached responses are sent
+   * @return true if the session is over
+   * @throws IOException
+   */
+  private boolean executeCommand(String command, PrintWriter writer, OutputStream os) throws IOException {
+    switch (command.toUpperCase()) {
+      case RouletteV1Protocol.CMD_RANDOM:
+        RandomCommandResponse rcResponse = new RandomCommandResponse();
+        try {
+          rcResponse.setFullname(store.pickRandomStudent().getFullname());
+        } catch (EmptyStoreException ex) {
+          rcResponse.setError("There is no student, you cannot pick a random one");
+        }
+        writer.println(JsonObjectMapper.toJson(rcResponse));
+        break;
+      case RouletteV1Protocol.CMD_HELP:
+        writer.println("Commands: " + Arrays.toString(RouletteV1Protocol.SUPPORTED_COMMANDS));
+        break;
+      case RouletteV1Protocol.CMD_INFO:
+        // the cached bytes go after what is still in the writer
+        writer.flush();
+        os.write(responses.getInfoResponse());
+        break;
+      case RouletteV1Protocol.CMD_BYE:
+        return true;
+      default:
+        writer.println("Huh? please use HELP if you don't know what commands are available.");
+        break;
+    }
+    return false;
   }
 
 }
@@ -5,14 +5,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-import ch.heigvd.res.labs.roulette.data.StudentsList;
 import ch.heigvd.res.labs.roulette.net.protocol.*;
 import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
 import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.IImportProgressListener;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsFileImporter;
+import ch.heigvd.res.labs.roulette.data.StudentsImport;
+import ch.heigvd.res.labs.roulette.data.StudentsPage;
+import ch.heigvd.res.labs.roulette.data.VersionedStudents;
+import ch.heigvd.res.labs.roulette.logging.SampledLogger;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.BufferedReader;
 import java.io.PrintWriter;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -24,96 +32,484 @@ import java.util.logging.Logger;
  * @author Julien Baeriswyl   [MODIFIED BY] (julien.baeriswyl@heig-vd.ch)
  * @author Iando Rafidimalala [MODIFIED BY] (iando.rafidimalalathevoz@heig-vd.ch)
  */
-public class RouletteV2ClientHandler implements IClientHandler
+public class RouletteV2ClientHandler implements IClientHandler, INonBlockingClientHandler
 {
     final static Logger LOG = Logger.getLogger(RouletteV1ClientHandler.class.getName());
 
+    // commands are logged on the hot path: sample them and limit their rate
+    static final SampledLogger COMMAND_LOG = new SampledLogger(LOG, "command", 1, 1000);
+
     private final IStudentsStore store;
 
+    private final CommandMetrics metrics;
+
+    private final ResponseCache responses;
+
+    private int nbCommand = 0;
+
+    /*
+     * Directory of files which clients may IMPORT (null if IMPORT is disabled)
+     */
+    private Path                 importDirectory = null;
+    private StudentsFileImporter fileImporter    = new StudentsFileImporter();
+
+    /*
+     * Session state, only used in non-blocking mode: the writer wrapping the
+     * connection output buffer and the import started by the last LOAD
+     * command (null when we are not loading data)
+     */
+    private PrintWriter    nonBlockingWriter;
+    private StudentsImport currentImport;
+    private int            remainingToLoad;
+    private long           loadStartTime;
+
     public RouletteV2ClientHandler(IStudentsStore store)
     {
-        this.store = store;
+        this(store, new CommandMetrics());
+    }
+
+    /**
+     * Create handler recording its commands in server-wide metrics.
+     *
+     * @param store    store shared by all client sessions
+     * @param metrics  where processing time of each command is recorded (and read by METRICS)
+     */
+    public RouletteV2ClientHandler(IStudentsStore store, CommandMetrics metrics)
+    {
+        this(store, metrics, new ResponseCache(store, RouletteV2Protocol.VERSION));
+    }
+
+    /**
+     * Create handler serving INFO and LIST from server-wide cache of encoded responses.
+     *
+     * @param store      store shared by all client sessions
+     * @param metrics    where processing time of each command is recorded (and read by METRICS)
+     * @param responses  encoded responses shared by all client sessions
+     */
+    public RouletteV2ClientHandler(IStudentsStore store, CommandMetrics metrics, ResponseCache responses)
+    {
+        this.store     = store;
+        this.metrics   = metrics;
+        this.responses = responses;
     }
 
+    /**
+     * Enable IMPORT command for files of directory (and its subdirectories).
+     *
+     * @param importDirectory  directory of files which clients may import, <code>null</code> to disable IMPORT
+     * @param fileImporter     importer reading files (shared by all client sessions)
+     */
+    public void setImportDirectory(Path importDirectory, StudentsFileImporter fileImporter)
+    {
+        this.importDirectory = importDirectory == null ? null : importDirectory.toAbsolutePath().normalize();
+        this.fileImporter    = fileImporter;
+    }
+
+    /**
+     * Serve commands of client in blocking mode. Commands already received are all processed
+     * before queued responses are sent (see PipelinedResponseStream), so a client pipelining
+     * its commands gets their responses in a single write.
+     */
     @Override
     public void handleClientConnection(InputStream is, OutputStream os) throws IOException
     {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-        PrintWriter    writer = new PrintWriter(new OutputStreamWriter(os));
+        BufferedReader          reader = new BufferedReader(new InputStreamReader(is));
+        PipelinedResponseStream out    = new PipelinedResponseStream(os);
+        PrintWriter             writer = new PrintWriter(new OutputStreamWriter(out));
 
         writer.println("Hello. Online HELP is available. Will you find it?");
         writer.flush();
+        out.send();
 
         String command;
         boolean done = false;
-        int nbCommand = 0;
 
         while (!done && ((command = reader.readLine()) != null)) {
-            LOG.log(Level.INFO, "COMMAND: {0}", command);
+            COMMAND_LOG.log(Level.INFO, "COMMAND: {0}", command);
             // When we reach this state, we have a wellformed command
             nbCommand++;
+            long startTime = System.nanoTime();
+            int  count     = RouletteV1ClientHandler.parseLoadCount(command);
+
+            if (RouletteV2Protocol.CMD_LOAD.equalsIgnoreCase(command)) {
+                writer.println(RouletteV2Protocol.RESPONSE_LOAD_START);
+                RouletteV1ClientHandler.sendIfDrained(reader, writer, out);
+
+                // count the students of this LOAD only (other sessions may be loading at the same time)
+                int numberOfNewStudents = store.importData(reader);
+                responses.invalidate();
+
+                writer.println(JsonObjectMapper.toJson(new LoadCommandResponse(LoadCommandResponse.SUCCESS, numberOfNewStudents)));
+            } else if (isProgressLoad(command)) {
+                writer.println(RouletteV2Protocol.RESPONSE_LOAD_START);
+                RouletteV1ClientHandler.sendIfDrained(reader, writer, out);
+
+                // report every chunk as soon as it is imported (client reads them while sending)
+                int numberOfNewStudents = store.importData(reader, progressReporter(writer, out));
+                responses.invalidate();
+
+                writer.println(JsonObjectMapper.toJson(new LoadCommandResponse(LoadCommandResponse.SUCCESS, numberOfNewStudents)));
+            } else if (count >= 0) {
+                // client announced number of students: read exactly that many lines, no end marker
+                writer.println(RouletteV2Protocol.RESPONSE_COUNTED_LOAD_START);
+                RouletteV1ClientHandler.sendIfDrained(reader, writer, out);
+
+                int numberOfNewStudents = store.importData(reader, count);
+                responses.invalidate();
+
+                writer.println(JsonObjectMapper.toJson(new LoadCommandResponse(LoadCommandResponse.SUCCESS, numberOfNewStudents)));
+            } else {
+                done = executeCommand(command, writer, out);
+            }
+            if (done) {
+                writer.flush();
+                out.send();
+            } else {
+                RouletteV1ClientHandler.sendIfDrained(reader, writer, out);
+            }
+            metrics.record(command, System.nanoTime() - startTime);
+        }
+        writer.flush();
+        out.send();
+    }
+
+    @Override
+    public void handleSessionStart(OutputStream os) throws IOException
+    {
+        nonBlockingWriter = new PrintWriter(new OutputStreamWriter(os));
+        nonBlockingWriter.println("Hello. Online HELP is available. Will you find it?");
+        nonBlockingWriter.flush();
+    }
+
+    @Override
+    public boolean handleLine(String line, OutputStream os) throws IOException
+    {
+        boolean done = false;
+        if (currentImport != null) {
+            if (remainingToLoad < 0 && line.equalsIgnoreCase(RouletteV2Protocol.CMD_LOAD_ENDOFDATA_MARKER)) {
+                commitLoad();
+            } else {
+                currentImport.addStudent(new Student(line));
+                if (--remainingToLoad == 0) {
+                    commitLoad();
+                }
+            }
+        } else {
+            COMMAND_LOG.log(Level.INFO, "COMMAND: {0}", line);
+            nbCommand++;
+
+            int count = RouletteV1ClientHandler.parseLoadCount(line);
+            if (RouletteV2Protocol.CMD_LOAD.equalsIgnoreCase(line)) {
+                nonBlockingWriter.println(RouletteV2Protocol.RESPONSE_LOAD_START);
+                currentImport   = store.beginImport(-1, null);
+                remainingToLoad = -1;
+                loadStartTime   = System.nanoTime();
+            } else if (isProgressLoad(line)) {
+                // progress lines are sent with the output buffer, when the event loop writes it
+                nonBlockingWriter.println(RouletteV2Protocol.RESPONSE_LOAD_START);
+                currentImport   = store.beginImport(-1, progressReporter(nonBlockingWriter, null));
+                remainingToLoad = -1;
+                loadStartTime   = System.nanoTime();
+            } else if (count >= 0) {
+                nonBlockingWriter.println(RouletteV2Protocol.RESPONSE_COUNTED_LOAD_START);
+                currentImport   = store.beginImport(count, null);
+                remainingToLoad = count;
+                loadStartTime   = System.nanoTime();
+                if (count == 0) {
+                    commitLoad();
+                }
+            } else {
+                long startTime = System.nanoTime();
+                done = executeCommand(line, nonBlockingWriter, os);
+                metrics.record(line, System.nanoTime() - startTime);
+            }
+        }
+        nonBlockingWriter.flush();
+        return done;
+    }
+
+    /**
+     * Non-blocking mode: finish import started by LOAD command and answer client.
+     */
+    private void commitLoad() throws IOException
+    {
+        int numberOfNewStudents = currentImport.finish();
+        responses.invalidate();
+        nonBlockingWriter.println(JsonObjectMapper.toJson(new LoadCommandResponse(LoadCommandResponse.SUCCESS, numberOfNewStudents)));
+        currentImport = null;
+        metrics.record(RouletteV2Protocol.CMD_LOAD, System.nanoTime() - loadStartTime);
+    }
+
+    /**
+     * Check if session is served in non-blocking mode (by an event loop, which must never block).
+     *
+     * @return <code>true</code> if session was started by handleSessionStart()
+     */
+    private boolean isNonBlocking()
+    {
+        return nonBlockingWriter != null;
+    }
+
+    /**
+     * Get commands served in mode of session: IMPORT is not served in non-blocking mode.
+     *
+     * @return commands listed by HELP
+     */
+    private String[] getSupportedCommands()
+    {
+        if (!isNonBlocking()) {
+            return RouletteV2Protocol.SUPPORTED_COMMANDS;
+        }
+        return Arrays.stream(RouletteV2Protocol.SUPPORTED_COMMANDS)
+                .filter(command -> !command.equals(RouletteV2Protocol.CMD_IMPORT))
+                .toArray(String[]::new);
+    }
 
-            switch (command.toUpperCase()) {
-                case RouletteV2Protocol.CMD_RANDOM:
-                    RandomCommandResponse rcResponse = new RandomCommandResponse();
-                    try {
-                        rcResponse.setFullname(store.pickRandomStudent().getFullname());
-                    } catch (EmptyStoreException ex) {
-                        rcResponse.setError("There is no student, you cannot pick a random one");
-                    }
-                    writer.println(JsonObjectMapper.toJson(rcResponse));
-                    writer.flush();
-                    break;
-                case RouletteV2Protocol.CMD_HELP:
-                    writer.println("Commands: " + Arrays.toString(RouletteV2Protocol.SUPPORTED_COMMANDS));
-                    break;
-                case RouletteV2Protocol.CMD_INFO:
-                    InfoCommandResponse response = new InfoCommandResponse(RouletteV2Protocol.VERSION, store.getNumberOfStudents());
-                    writer.println(JsonObjectMapper.toJson(response));
-                    writer.flush();
-                    break;
-                case RouletteV2Protocol.CMD_LOAD:
-                    writer.println(RouletteV2Protocol.RESPONSE_LOAD_START);
-                    writer.flush();
-
-                    int oldNumberOfStudent = store.getNumberOfStudents();
-
-                    store.importData(reader);
-
-                    // Mantha32: retrieve the number of the new students and check the difference after storage action
-                    int numberOfNewStudents = store.getNumberOfStudents() - oldNumberOfStudent;
-
-                    writer.println(JsonObjectMapper.toJson(new LoadCommandResponse(LoadCommandResponse.SUCCESS, numberOfNewStudents)));
-                    writer.flush();
-                    break;
-                case RouletteV2Protocol.CMD_LIST:
-                    // JBL: Need conversion List<Student> -> StudentList to serialize
-                    StudentsList sl = new StudentsList();
-                    sl.setStudents(store.listStudents());
-
-                    // JBL: server send list of stored students
-                    writer.println(JsonObjectMapper.toJson(sl));
-                    writer.flush();
-                    break;
-                case RouletteV2Protocol.CMD_CLEAR:
-                    // JBL: server clears stored students and tells it to client
-                    store.clear();
-                    writer.println(RouletteV2Protocol.RESPONSE_CLEAR_DONE);
-                    writer.flush();
-                    break;
-                case RouletteV2Protocol.CMD_BYE:
-                    // JBL: server now response number of command with status of BYE.
-                    writer.println(JsonObjectMapper.toJson(new ByeCommandResponse(ByeCommandResponse.SUCCESS, nbCommand)));
-                    writer.flush();
-                    done = true;
-                    break;
-                default:
-                    writer.println("Huh? please use HELP if you don't know what commands are available.");
-                    writer.flush();
-                    break;
+    /**
+     * Import roster file of server host, if it is in import directory (blocking mode only).
+     * Files are read in parallel, but command still holds its session until students are
+     * published.
+     *
+     * @param path  path of file, relative to import directory
+     * @return response to send to client (failure if import is disabled, path is outside of
+     *         import directory or file cannot be read)
+     */
+    private LoadCommandResponse executeImport(String path)
+    {
+        if (importDirectory == null || path == null || path.isEmpty()) {
+            return new LoadCommandResponse(LoadCommandResponse.FAILURE, 0);
+        }
+        Path file = null;
+        try {
+            // real paths, so that a symbolic link cannot lead out of the directory
+            file = importDirectory.resolve(path).toRealPath();
+            if (!file.startsWith(importDirectory.toRealPath())) {
+                LOG.log(Level.WARNING, "Refusing to import {0}, outside of import directory", file);
+                return new LoadCommandResponse(LoadCommandResponse.FAILURE, 0);
             }
+            int numberOfNewStudents = fileImporter.importFile(store, file);
+            responses.invalidate();
+            return new LoadCommandResponse(LoadCommandResponse.SUCCESS, numberOfNewStudents);
+        } catch (IOException | InvalidPathException ex) {
+            LOG.log(Level.WARNING, "Cannot import {0}: {1}", new Object[]{file == null ? path : file, ex.getMessage()});
+            return new LoadCommandResponse(LoadCommandResponse.FAILURE, 0);
+        }
+    }
+
+    /**
+     * Check if command is LOAD PROGRESS (LOAD reporting progress after each chunk).
+     *
+     * @param command  command sent by client
+     * @return <code>true</code> if command is LOAD PROGRESS, else <code>false</code>
+     */
+    private static boolean isProgressLoad(String command)
+    {
+        String[] words = command.trim().split("\\s+");
+        return words.length == 2
+            && words[0].equalsIgnoreCase(RouletteV2Protocol.CMD_LOAD)
+            && words[1].equalsIgnoreCase(RouletteV2Protocol.LOAD_PROGRESS);
+    }
+
+    /**
+     * Create listener sending a PROGRESS line to client after each chunk of an import.
+     *
+     * @param writer  where progress lines are sent
+     * @param out     stream wrapped by writer, to send each line immediately (blocking mode),
+     *                or <code>null</code>
+     * @return listener to pass to store import
+     */
+    private static IImportProgressListener progressReporter(PrintWriter writer, PipelinedResponseStream out)
+    {
+        return numberOfStudents -> {
+            writer.println(RouletteV2Protocol.RESPONSE_LOAD_PROGRESS + " " + numberOfStudents);
+            if (out != null) {
+                writer.flush();
+                out.send();
+            }
+        };
+    }
+
+    /**
+     * Process commands which do not change session state (every command but LOAD),
+     * identically in blocking and non-blocking mode. Response may be left in writer:
+     * caller flushes it.
+     *
+     * @param command  command sent by client
+     * @param writer   where response is sent
+     * @param os       stream wrapped by writer, where cached responses are sent
+     * @return <code>true</code> if session is over, else <code>false</code>
+     * @throws IOException if serializing response failed
+     */
+    private boolean executeCommand(String command, PrintWriter writer, OutputStream os) throws IOException
+    {
+        // only LIST and IMPORT take arguments: any other command followed by something is unknown
+        String verb     = command;
+        String argument = null;
+        int    space    = command.indexOf(' ');
+        if (space > 0 && command.substring(0, space).equalsIgnoreCase(RouletteV2Protocol.CMD_LIST)) {
+            verb     = RouletteV2Protocol.CMD_LIST;
+            argument = command.substring(space + 1).trim();
+        } else if (space > 0 && command.substring(0, space).equalsIgnoreCase(RouletteV2Protocol.CMD_IMPORT)) {
+            verb     = RouletteV2Protocol.CMD_IMPORT;
+            argument = command.substring(space + 1).trim();
+        }
+
+        switch (verb.toUpperCase()) {
+            case RouletteV2Protocol.CMD_RANDOM:
+                RandomCommandResponse rcResponse = new RandomCommandResponse();
+                try {
+                    rcResponse.setFullname(store.pickRandomStudent().getFullname());
+                } catch (EmptyStoreException ex) {
+                    rcResponse.setError("There is no student, you cannot pick a random one");
+                }
+                writer.println(JsonObjectMapper.toJson(rcResponse));
+                break;
+            case RouletteV2Protocol.CMD_HELP:
+                writer.println("Commands: " + Arrays.toString(getSupportedCommands()));
+                break;
+            case RouletteV2Protocol.CMD_INFO:
+                // cached bytes go after what is still in writer
+                writer.flush();
+                os.write(responses.getInfoResponse());
+                break;
+            case RouletteV2Protocol.CMD_LIST:
+                executeList(argument, writer, os);
+                break;
+            case RouletteV2Protocol.CMD_CLEAR:
+                // JBL: server clears stored students and tells it to client
+                store.clear();
+                responses.invalidate();
+                writer.println(RouletteV2Protocol.RESPONSE_CLEAR_DONE);
+                break;
+            case RouletteV2Protocol.CMD_METRICS:
+                writer.println(JsonObjectMapper.toJson(metrics.snapshot()));
+                break;
+            case RouletteV2Protocol.CMD_IMPORT:
+                if (isNonBlocking()) {
+                    // reading the file would stall every connection of the event loop
+                    LOG.log(Level.WARNING, "Refusing to import {0}: IMPORT is only served in blocking mode", argument);
+                    writer.println(JsonObjectMapper.toJson(new LoadCommandResponse(LoadCommandResponse.FAILURE, 0)));
+                } else {
+                    writer.println(JsonObjectMapper.toJson(executeImport(argument)));
+                }
+                break;
+            case RouletteV2Protocol.CMD_BYE:
+                // JBL: server now response number of command with status of BYE.
+                writer.println(JsonObjectMapper.toJson(new ByeCommandResponse(ByeCommandResponse.SUCCESS, nbCommand)));
+                return true;
+            default:
+                writer.println("Huh? please use HELP if you don't know what commands are available.");
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Process LIST and its variants:
+     * <ul>
+     *     <li><code>LIST</code>: all students</li>
+     *     <li><code>LIST IF-NONE-MATCH version</code>: NOT MODIFIED if store still has given version,
+     *         else all students with version of store</li>
+     *     <li><code>LIST SINCE version</code>: students added since given version (or full snapshot
+     *         if version is no more in change log of store)</li>
+     *     <li><code>LIST PAGE offset limit</code>: at most limit students from offset, with cursor of next page</li>
+     *     <li><code>LIST CURSOR cursor limit</code>: next page, or CURSOR EXPIRED if store was cleared since
+     *         cursor was sent (LOAD only appends students, so it does not move pages)</li>
+     * </ul>
+     *
+     * @param argument  what follows LIST on command line (<code>null</code> if nothing)
+     * @param writer    where response is sent
+     * @param os        stream wrapped by writer, where cached responses are sent
+     * @throws IOException if serializing response failed
+     */
+    private void executeList(String argument, PrintWriter writer, OutputStream os) throws IOException
+    {
+        if (argument == null) {
+            sendList(responses.getListResponse(), false, writer, os);
+            return;
+        }
+
+        String[] tokens = argument.split("\\s+");
+        String   variant = tokens[0].toUpperCase();
+        Long     number  = tokens.length >= 2 ? parseNumber(tokens[1]) : null;
+        Long     limit   = tokens.length == 3 ? parseNumber(tokens[2]) : null;
+        boolean  paged   = limit != null && limit >= 1 && limit <= RouletteV2Protocol.MAX_PAGE_SIZE;
+
+        if (tokens.length == 2 && number != null && variant.equals(RouletteV2Protocol.LIST_IF_NONE_MATCH)) {
+            if (number == store.getVersion()) {
+                writer.println(RouletteV2Protocol.RESPONSE_NOT_MODIFIED);
+            } else {
+                sendList(responses.getVersionedListResponse(), true, writer, os);
+            }
+        } else if (tokens.length == 2 && number != null && variant.equals(RouletteV2Protocol.LIST_SINCE)) {
+            writer.println(JsonObjectMapper.toJson(store.changesSince(number)));
+        } else if (paged && number != null && number >= 0 && variant.equals(RouletteV2Protocol.LIST_PAGE)) {
+            StudentsPage page = store.pageOfStudents((int) Math.min(number, Integer.MAX_VALUE), limit.intValue());
+            writer.println(JsonObjectMapper.toJson(toPageResponse(page)));
+        } else if (paged && variant.equals(RouletteV2Protocol.LIST_CURSOR) && parseCursor(tokens[1]) != null) {
+            long[]       cursor = parseCursor(tokens[1]);
+            StudentsPage page   = store.pageOfStudents((int) cursor[1], limit.intValue());
+            if (page.getEpoch() != cursor[0]) {
+                writer.println(RouletteV2Protocol.RESPONSE_CURSOR_EXPIRED);
+            } else {
+                writer.println(JsonObjectMapper.toJson(toPageResponse(page)));
+            }
+        } else {
+            writer.println("Huh? please use HELP if you don't know what commands are available.");
+        }
+    }
+
+    /**
+     * Send cached LIST response, or stream students if roster was too large to be cached.
+     *
+     * @param cached   cached response (<code>null</code> if not cached)
+     * @param versioned  <code>true</code> to include version of store in streamed response
+     */
+    private void sendList(byte[] cached, boolean versioned, PrintWriter writer, OutputStream os) throws IOException
+    {
+        if (cached != null) {
             writer.flush();
+            os.write(cached);
+        } else {
+            // roster too large to be cached: stream students as they are serialized (memory does not depend on roster size),
+            // with version read together with them (a LOAD in between would make list newer than its version)
+            VersionedStudents snapshot = store.versionedSnapshotStudents();
+            JsonObjectMapper.writeStudentsList(snapshot.getStudents(), versioned ? snapshot.getVersion() : null, writer);
+            writer.println();
         }
+    }
+
+    private static ListPageCommandResponse toPageResponse(StudentsPage page)
+    {
+        String nextCursor = null;
+        if (!page.isLast()) {
+            // opaque for client: epoch (version of last clear) and offset of next page
+            nextCursor = Long.toString(page.getEpoch(), 36) + "." + Integer.toString(page.getOffset() + page.getStudents().size(), 36);
+        }
+        return new ListPageCommandResponse(page.getStudents(), nextCursor);
+    }
 
+    /**
+     * @return epoch and offset of cursor, or <code>null</code> if cursor is malformed
+     */
+    private static long[] parseCursor(String cursor)
+    {
+        int dot = cursor.indexOf('.');
+        try {
+            long epoch  = Long.parseLong(cursor.substring(0, dot), 36);
+            int  offset = Integer.parseInt(cursor.substring(dot + 1), 36);
+            return offset < 0 ? null : new long[]{epoch, offset};
+        } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+            return null;
+        }
+    }
+
+    private static Long parseNumber(String token)
+    {
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
     }
 }
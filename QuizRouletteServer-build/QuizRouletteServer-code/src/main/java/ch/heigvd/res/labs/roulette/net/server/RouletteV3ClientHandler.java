@@ -0,0 +1,173 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.IStudentsStore;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsImport;
+import ch.heigvd.res.labs.roulette.logging.SampledLogger;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV3Protocol;
+import static ch.heigvd.res.labs.roulette.net.protocol.RouletteV3Frames.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements the Roulette protocol (version 3), in blocking mode
+ * only (the non-blocking server mode reads lines).
+ *
+ * Requests are dispatched on their opcode and responses are written in binary,
+ * without parsing nor serializing any text. Responses are buffered, and only
+ * flushed when the client has no more request waiting in the input buffer, so
+ * a client sending several requests at once gets its responses in a single
+ * write.
+ */
+public class RouletteV3ClientHandler implements IClientHandler {
+
+  final static Logger LOG = Logger.getLogger(RouletteV3ClientHandler.class.getName());
+
+  static final SampledLogger COMMAND_LOG = new SampledLogger(LOG, "command", 1, 1000);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final IStudentsStore store;
+
+  private final CommandMetrics metrics;
+
+  private final ResponseCache responses;
+
+  private int numberOfCommands = 0;
+
+  public RouletteV3ClientHandler(IStudentsStore store) {
+    this(store, new CommandMetrics(), new ResponseCache(store, RouletteV3Protocol.VERSION));
+  }
+
+  /**
+   * @param store the store shared by all client sessions
+   * @param metrics where the processing time of every command is recorded
+   * @param responses the encoded text responses, invalidated when the store is
+   * changed
+   */
+  public RouletteV3ClientHandler(IStudentsStore store, CommandMetrics metrics, ResponseCache responses) {
+    this.store = store;
+    this.metrics = metrics;
+    this.responses = responses;
+  }
+
+  @Override
+  public void handleClientConnection(InputStream is, OutputStream os) throws IOException {
+    InputStream in = new BufferedInputStream(is, BUFFER_SIZE);
+    OutputStream out = new BufferedOutputStream(os, BUFFER_SIZE);
+
+    out.write(RouletteV3Protocol.STATUS_OK);
+    writeString(out, RouletteV3Protocol.VERSION);
+    out.flush();
+
+    boolean done = false;
+    int opcode;
+    while (!done && (opcode = in.read()) >= 0) {
+      long startTime = System.nanoTime();
+      numberOfCommands++;
+      String command = executeCommand(opcode, in, out);
+      COMMAND_LOG.log(Level.INFO, "COMMAND: {0}", command);
+      done = command == null || command.equals(RouletteV2Protocol.CMD_BYE);
+      if (done || in.available() == 0) {
+        out.flush();
+      }
+      if (command != null) {
+        metrics.record(command, System.nanoTime() - startTime);
+      }
+    }
+    out.flush();
+  }
+
+  /**
+   * Reads the arguments of a request and writes its response.
+   *
+   * @param opcode the opcode of the request
+   * @param in where the arguments are read
+   * @param out where the response is written
+   * @return the name of the command (as in the text protocols), or null if
+   * the opcode is unknown
+   * @throws IOException
+   */
+  private String executeCommand(int opcode, InputStream in, OutputStream out) throws IOException {
+    switch (opcode) {
+      case RouletteV3Protocol.OP_RANDOM:
+        try {
+          Student student = store.pickRandomStudent();
+          out.write(RouletteV3Protocol.STATUS_OK);
+          writeString(out, student.getFullname());
+        } catch (EmptyStoreException ex) {
+          out.write(RouletteV3Protocol.STATUS_EMPTY);
+        }
+        return RouletteV2Protocol.CMD_RANDOM;
+      case RouletteV3Protocol.OP_INFO:
+        out.write(RouletteV3Protocol.STATUS_OK);
+        writeString(out, RouletteV3Protocol.VERSION);
+        writeVarint(out, store.getNumberOfStudents());
+        return RouletteV2Protocol.CMD_INFO;
+      case RouletteV3Protocol.OP_LOAD:
+        int count = readVarint(in);
+        StudentsImport studentsImport = store.beginImport(count, null);
+        for (int i = 0; i < count; i++) {
+          studentsImport.addStudent(new Student(readString(in)));
+        }
+        int numberOfNewStudents = studentsImport.finish();
+        responses.invalidate();
+        out.write(RouletteV3Protocol.STATUS_OK);
+        writeVarint(out, numberOfNewStudents);
+        return RouletteV2Protocol.CMD_LOAD;
+      case RouletteV3Protocol.OP_LIST:
+        out.write(RouletteV3Protocol.STATUS_OK);
+        writeList(out);
+        return RouletteV2Protocol.CMD_LIST;
+      case RouletteV3Protocol.OP_CLEAR:
+        store.clear();
+        responses.invalidate();
+        out.write(RouletteV3Protocol.STATUS_OK);
+        return RouletteV2Protocol.CMD_CLEAR;
+      case RouletteV3Protocol.OP_BYE:
+        out.write(RouletteV3Protocol.STATUS_OK);
+        writeVarint(out, numberOfCommands);
+        return RouletteV2Protocol.CMD_BYE;
+      default:
+        LOG.log(Level.WARNING, "Unknown opcode {0}, closing the connection", opcode);
+        out.write(RouletteV3Protocol.STATUS_UNKNOWN_OPCODE);
+        return null;
+    }
+  }
+
+  /*
+   * Streams the students in chunks, so that the roster is neither copied nor
+   * counted up front
+   */
+  private void writeList(OutputStream out) throws IOException {
+    List<String> chunk = new ArrayList<>(RouletteV3Protocol.LIST_CHUNK_SIZE);
+    for (Student student : store.snapshotStudents()) {
+      chunk.add(student.getFullname());
+      if (chunk.size() == RouletteV3Protocol.LIST_CHUNK_SIZE) {
+        writeChunk(out, chunk);
+      }
+    }
+    if (!chunk.isEmpty()) {
+      writeChunk(out, chunk);
+    }
+    writeVarint(out, 0);
+  }
+
+  private static void writeChunk(OutputStream out, List<String> chunk) throws IOException {
+    writeVarint(out, chunk.size());
+    for (String name : chunk) {
+      writeString(out, name);
+    }
+    chunk.clear();
+  }
+
+}
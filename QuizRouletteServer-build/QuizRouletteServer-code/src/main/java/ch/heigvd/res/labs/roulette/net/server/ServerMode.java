@@ -0,0 +1,20 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+/**
+ * The I/O models supported by the RouletteServer.
+ */
+public enum ServerMode {
+
+  /**
+   * One thread per client connection, blocking on the socket streams (the
+   * classic model, handled by ClientWorker and IClientHandler)
+   */
+  BLOCKING,
+
+  /**
+   * A small fixed set of event loop threads multiplexing all connections with a
+   * java.nio Selector (handled by INonBlockingClientHandler)
+   */
+  NON_BLOCKING
+
+}
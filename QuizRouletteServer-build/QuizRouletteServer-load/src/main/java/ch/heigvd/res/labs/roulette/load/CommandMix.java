@@ -0,0 +1,73 @@
+package ch.heigvd.res.labs.roulette.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The proportion of each command in the generated traffic, e.g.
+ * "RANDOM:80,INFO:15,LIST:4,LOAD:1" (the weights do not need to add up to 100).
+ */
+class CommandMix {
+
+  private final LoadCommand[] commands;
+  private final int[] cumulativeWeights;
+  private final int totalWeight;
+
+  CommandMix(Map<LoadCommand, Integer> weights) {
+    commands = new LoadCommand[weights.size()];
+    cumulativeWeights = new int[weights.size()];
+    int total = 0;
+    int i = 0;
+    for (Map.Entry<LoadCommand, Integer> entry : weights.entrySet()) {
+      if (entry.getValue() < 0) {
+        throw new IllegalArgumentException("Negative weight for " + entry.getKey());
+      }
+      total += entry.getValue();
+      commands[i] = entry.getKey();
+      cumulativeWeights[i] = total;
+      i++;
+    }
+    if (total == 0) {
+      throw new IllegalArgumentException("The command mix is empty");
+    }
+    totalWeight = total;
+  }
+
+  static CommandMix parse(String spec) {
+    Map<LoadCommand, Integer> weights = new EnumMap<>(LoadCommand.class);
+    for (String item : spec.split(",")) {
+      String[] parts = item.trim().split(":");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Invalid command mix item (expected COMMAND:WEIGHT): " + item);
+      }
+      weights.put(LoadCommand.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+    }
+    return new CommandMix(weights);
+  }
+
+  LoadCommand pick(Random random) {
+    int n = random.nextInt(totalWeight);
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (n < cumulativeWeights[i]) {
+        return commands[i];
+      }
+    }
+    return commands[commands.length - 1];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    int previous = 0;
+    for (int i = 0; i < commands.length; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(commands[i]).append(':').append(cumulativeWeights[i] - previous);
+      previous = cumulativeWeights[i];
+    }
+    return sb.toString();
+  }
+
+}
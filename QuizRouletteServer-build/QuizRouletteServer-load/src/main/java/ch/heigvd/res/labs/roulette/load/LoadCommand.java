@@ -0,0 +1,8 @@
+package ch.heigvd.res.labs.roulette.load;
+
+/**
+ * The Roulette Protocol commands that the load generator can send.
+ */
+enum LoadCommand {
+  RANDOM, INFO, LIST, LOAD
+}
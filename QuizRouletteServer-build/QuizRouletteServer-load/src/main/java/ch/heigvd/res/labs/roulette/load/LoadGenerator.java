@@ -0,0 +1,192 @@
+package ch.heigvd.res.labs.roulette.load;
+
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.client.IRouletteV2Client;
+import ch.heigvd.res.labs.roulette.net.client.RouletteV2ClientImpl;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * A load generator for the Roulette Protocol (version 2). It opens a number of
+ * concurrent sessions against a RouletteServer, sends a mix of RANDOM, INFO,
+ * LIST and LOAD commands and reports the throughput and the latency
+ * percentiles of each command. Increase the rate (or the number of sessions in
+ * closed-loop mode) until the latencies explode to find the saturation point of
+ * the server.
+ *
+ * Usage: java -jar QuizRouletteServer-load-standalone.jar [options], where the
+ * options are:
+ *   --host=localhost            server address
+ *   --port=2613                 server port
+ *   --sessions=10               number of concurrent sessions
+ *   --rate=0                    total commands per second for all sessions
+ *                               (open loop); 0 means closed loop
+ *   --duration=30               measured duration, in seconds
+ *   --warmup=5                  duration not measured at the beginning, in seconds
+ *   --mix=RANDOM:80,INFO:15,LIST:4,LOAD:1
+ *   --preload=100               students loaded before the test starts
+ *   --load-size=10              students sent by each LOAD
+ *   --seed=0                    seed of the command sequences
+ */
+public class LoadGenerator {
+
+  String host = "localhost";
+  int port = RouletteV2Protocol.DEFAULT_PORT;
+  int sessions = 10;
+  double rate = 0;
+  int durationSeconds = 30;
+  int warmupSeconds = 5;
+  CommandMix mix = CommandMix.parse("RANDOM:80,INFO:15,LIST:4,LOAD:1");
+  int preload = 100;
+  int loadSize = 10;
+  long seed = 0;
+
+  volatile long startNanos;
+  volatile long measureStartNanos;
+  volatile long endNanos;
+
+  public static void main(String[] args) throws Exception {
+    LoadGenerator generator = new LoadGenerator();
+    for (String arg : args) {
+      generator.configure(arg);
+    }
+    generator.run(System.out);
+  }
+
+  private void configure(String arg) {
+    int eq = arg.indexOf('=');
+    if (!arg.startsWith("--") || eq < 0) {
+      throw new IllegalArgumentException("Invalid argument (expected --name=value): " + arg);
+    }
+    String name = arg.substring(2, eq);
+    String value = arg.substring(eq + 1);
+    switch (name) {
+      case "host":
+        host = value;
+        break;
+      case "port":
+        port = Integer.parseInt(value);
+        break;
+      case "sessions":
+        sessions = Integer.parseInt(value);
+        break;
+      case "rate":
+        rate = Double.parseDouble(value);
+        break;
+      case "duration":
+        durationSeconds = Integer.parseInt(value);
+        break;
+      case "warmup":
+        warmupSeconds = Integer.parseInt(value);
+        break;
+      case "mix":
+        mix = CommandMix.parse(value);
+        break;
+      case "preload":
+        preload = Integer.parseInt(value);
+        break;
+      case "load-size":
+        loadSize = Integer.parseInt(value);
+        break;
+      case "seed":
+        seed = Long.parseLong(value);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown option: " + name);
+    }
+  }
+
+  void run(PrintStream out) throws IOException, InterruptedException {
+    out.printf("Target %s:%d, %d sessions, %s, mix %s, %ds warmup + %ds measured%n", host, port, sessions,
+      rate > 0 ? "open loop at " + rate + " commands/s" : "closed loop", mix, warmupSeconds, durationSeconds);
+    preloadStudents();
+
+    CountDownLatch done = new CountDownLatch(sessions);
+    List<LoadSession> loadSessions = new ArrayList<>();
+    for (int i = 0; i < sessions; i++) {
+      LoadSession session = new LoadSession(this, i, done);
+      session.connect();
+      loadSessions.add(session);
+    }
+
+    startNanos = System.nanoTime();
+    measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+    endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+    for (LoadSession session : loadSessions) {
+      Thread thread = new Thread(session, "load-session-" + loadSessions.indexOf(session));
+      thread.setDaemon(true);
+      thread.start();
+    }
+    done.await();
+
+    report(loadSessions, out);
+  }
+
+  private void preloadStudents() throws IOException {
+    if (preload <= 0) {
+      return;
+    }
+    List<Student> students = new ArrayList<>(preload);
+    for (int i = 0; i < preload; i++) {
+      students.add(new Student("preloaded student " + i));
+    }
+    IRouletteV2Client client = new RouletteV2ClientImpl();
+    client.connect(host, port);
+    client.loadStudents(students);
+    client.disconnect();
+  }
+
+  private void report(List<LoadSession> loadSessions, PrintStream out) {
+    Map<LoadCommand, Histogram> latencies = new EnumMap<>(LoadCommand.class);
+    Map<LoadCommand, Long> errors = new EnumMap<>(LoadCommand.class);
+    Histogram total = new Histogram(3);
+    long totalErrors = 0;
+    for (LoadCommand command : LoadCommand.values()) {
+      Histogram histogram = new Histogram(3);
+      long commandErrors = 0;
+      for (LoadSession session : loadSessions) {
+        histogram.add(session.latencies.get(command));
+        commandErrors += session.errors.get(command)[0];
+      }
+      latencies.put(command, histogram);
+      errors.put(command, commandErrors);
+      total.add(histogram);
+      totalErrors += commandErrors;
+    }
+
+    out.println();
+    out.printf("%-8s %10s %8s %12s %10s %10s %10s %10s %10s%n",
+      "command", "count", "errors", "ops/s", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)");
+    for (LoadCommand command : LoadCommand.values()) {
+      printLine(out, command.name(), latencies.get(command), errors.get(command));
+    }
+    printLine(out, "TOTAL", total, totalErrors);
+  }
+
+  private void printLine(PrintStream out, String label, Histogram histogram, long errors) {
+    long count = histogram.getTotalCount();
+    if (count == 0 && errors == 0) {
+      return;
+    }
+    out.printf("%-8s %10d %8d %12.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", label, count, errors,
+      count / (double) durationSeconds,
+      micros(histogram.getValueAtPercentile(50)),
+      micros(histogram.getValueAtPercentile(90)),
+      micros(histogram.getValueAtPercentile(99)),
+      micros(histogram.getValueAtPercentile(99.9)),
+      micros(histogram.getMaxValue()));
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+
+}
@@ -0,0 +1,148 @@
+package ch.heigvd.res.labs.roulette.load;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.client.IRoulettePipeline;
+import ch.heigvd.res.labs.roulette.net.client.IRouletteV2Client;
+import ch.heigvd.res.labs.roulette.net.client.RouletteV2ClientImpl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.HdrHistogram.Histogram;
+
+/**
+ * One client session of the load generator. It runs on its own thread, sends
+ * commands picked from the command mix and records the latency of each one.
+ *
+ * In closed-loop mode (no rate), the next command is sent as soon as the
+ * response to the previous one has been received. In open-loop mode, commands
+ * are scheduled at a fixed interval and the latency is measured from the time
+ * the command should have been sent: when the server falls behind, the waiting
+ * time is counted (no coordinated omission).
+ */
+class LoadSession implements Runnable {
+
+  static final Logger LOG = Logger.getLogger(LoadSession.class.getName());
+
+  private final LoadGenerator generator;
+  private final int sessionNumber;
+  private final Random random;
+  private final List<Student> studentsToLoad;
+  private final CountDownLatch done;
+
+  private IRouletteV2Client client;
+
+  final Map<LoadCommand, Histogram> latencies = new EnumMap<>(LoadCommand.class);
+  final Map<LoadCommand, long[]> errors = new EnumMap<>(LoadCommand.class);
+
+  LoadSession(LoadGenerator generator, int sessionNumber, CountDownLatch done) {
+    this.generator = generator;
+    this.sessionNumber = sessionNumber;
+    this.random = new Random(generator.seed + sessionNumber);
+    this.done = done;
+    studentsToLoad = new ArrayList<>(generator.loadSize);
+    for (int i = 0; i < generator.loadSize; i++) {
+      studentsToLoad.add(new Student("load generator student " + sessionNumber + "-" + i));
+    }
+    for (LoadCommand command : LoadCommand.values()) {
+      latencies.put(command, new Histogram(3));
+      errors.put(command, new long[1]);
+    }
+  }
+
+  void connect() throws IOException {
+    client = new RouletteV2ClientImpl();
+    client.connect(generator.host, generator.port);
+  }
+
+  @Override
+  public void run() {
+    try {
+      long interval = generator.rate > 0 ? (long) (1e9 * generator.sessions / generator.rate) : 0;
+      // spread the sessions over the first interval, so that they do not all fire at once
+      long next = generator.startNanos + (interval > 0 ? (interval * sessionNumber) / generator.sessions : 0);
+      while (true) {
+        long intendedStart;
+        if (interval > 0) {
+          intendedStart = next;
+          next += interval;
+          long wait;
+          while ((wait = intendedStart - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+          }
+        } else {
+          intendedStart = System.nanoTime();
+        }
+        if (intendedStart - generator.endNanos >= 0) {
+          break;
+        }
+        LoadCommand command = generator.mix.pick(random);
+        boolean measured = intendedStart - generator.measureStartNanos >= 0;
+        try {
+          execute(command);
+          if (measured) {
+            latencies.get(command).recordValue(System.nanoTime() - intendedStart);
+          }
+        } catch (IOException ex) {
+          if (measured) {
+            errors.get(command)[0]++;
+          }
+          LOG.log(Level.FINE, "Session {0}: {1} failed: {2}", new Object[]{sessionNumber, command, ex.getMessage()});
+          reconnect();
+        }
+      }
+      try {
+        client.disconnect();
+      } catch (IOException ex) {
+        LOG.log(Level.FINE, ex.getMessage());
+      }
+    } finally {
+      done.countDown();
+    }
+  }
+
+  private void execute(LoadCommand command) throws IOException {
+    switch (command) {
+      case RANDOM:
+        try {
+          client.pickRandomStudent();
+        } catch (EmptyStoreException ex) {
+          // a valid answer of the server: the store is empty
+        }
+        break;
+      case INFO:
+        client.getNumberOfStudents();
+        break;
+      case LIST:
+        // plain LIST: listStudents() sends a conditional LIST, which is
+        // mostly answered NOT MODIFIED and would not measure the roster
+        IRoulettePipeline pipeline = client.pipeline();
+        pipeline.listStudents();
+        pipeline.execute();
+        break;
+      case LOAD:
+        client.loadStudents(studentsToLoad);
+        break;
+    }
+  }
+
+  private void reconnect() {
+    while (System.nanoTime() - generator.endNanos < 0) {
+      try {
+        connect();
+        return;
+      } catch (IOException ex) {
+        LOG.log(Level.FINE, "Session {0}: reconnection failed: {1}", new Object[]{sessionNumber, ex.getMessage()});
+        LockSupport.parkNanos(100_000_000L);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,121 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class contains automated tests to validate the data store serving a
+ * memory-mapped roster file
+ */
+public class MappedRosterStudentsStoreImplTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<Student> roster = Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("fabienne"));
+
+  private Path file;
+
+  @Before
+  public void writeRosterFile() throws IOException {
+    file = folder.getRoot().toPath().resolve("roster.bin");
+    RosterFile.write(roster, file);
+  }
+
+  @Test
+  public void theStoreShouldServeTheStudentsOfTheRosterFile() throws IOException, EmptyStoreException {
+    try (MappedRosterStudentsStoreImpl store = new MappedRosterStudentsStoreImpl(file)) {
+      assertEquals(3, store.getNumberOfStudents());
+      assertEquals(roster, store.listStudents());
+      Set<Student> picked = new HashSet<>();
+      for (int i = 0; i < 1000; i++) {
+        picked.add(store.pickRandomStudent());
+      }
+      assertEquals(new HashSet<>(roster), picked);
+    }
+  }
+
+  @Test
+  public void loadedStudentsShouldFollowTheStudentsOfTheRosterFile() throws IOException {
+    try (MappedRosterStudentsStoreImpl store = new MappedRosterStudentsStoreImpl(file)) {
+      long version = store.getVersion();
+      assertFalse(store.changesSince(version).isFullSnapshot());
+      assertTrue(store.changesSince(version).getStudents().isEmpty());
+
+      store.addStudents(Arrays.asList(new Student("julien"), new Student("iando")));
+      assertEquals(Arrays.asList(new Student("julien"), new Student("iando")), store.changesSince(version).getStudents());
+      assertEquals(Arrays.asList(new Student("fabienne"), new Student("julien")), store.pageOfStudents(2, 2).getStudents());
+      assertEquals(5, store.getNumberOfStudents());
+
+      store.clear();
+      store.addStudent(new Student("sacha"));
+      assertEquals(Arrays.asList(new Student("sacha")), store.listStudents());
+    }
+    assertEquals(roster, RosterFile.readStudents(file));
+  }
+
+  @Test
+  public void severalStoresShouldShareTheSameRosterFile() throws IOException {
+    try (MappedRosterStudentsStoreImpl first = new MappedRosterStudentsStoreImpl(file);
+      MappedRosterStudentsStoreImpl second = new MappedRosterStudentsStoreImpl(file)) {
+      first.clear();
+      assertEquals(0, first.getNumberOfStudents());
+      assertEquals(roster, second.listStudents());
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void readersShouldNotWaitForAWriter() throws Exception {
+    CountDownLatch copying = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    // a list which keeps the writer in the middle of its copy
+    List<Student> slowStudents = new AbstractList<Student>() {
+      @Override
+      public Student get(int i) {
+        return new Student("julien");
+      }
+
+      @Override
+      public boolean isEmpty() {
+        return false;
+      }
+
+      @Override
+      public int size() {
+        copying.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return 1;
+      }
+    };
+    try (MappedRosterStudentsStoreImpl store = new MappedRosterStudentsStoreImpl(file)) {
+      long version = store.getVersion();
+      Thread writer = new Thread(() -> store.addStudents(slowStudents));
+      writer.start();
+      copying.await();
+
+      assertEquals(version, store.versionedSnapshotStudents().getVersion());
+      assertTrue(store.changesSince(version).getStudents().isEmpty());
+      assertEquals(roster, store.pageOfStudents(0, 10).getStudents());
+
+      release.countDown();
+      writer.join();
+      assertEquals(Arrays.asList(new Student("julien")), store.changesSince(version).getStudents());
+    }
+  }
+
+}
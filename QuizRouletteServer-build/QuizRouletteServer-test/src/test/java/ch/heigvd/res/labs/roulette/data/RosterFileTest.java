@@ -0,0 +1,56 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class contains automated tests to validate the binary roster files
+ */
+public class RosterFileTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void aRosterShouldBeReadAsItWasWritten() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("roster.bin");
+    List<Student> students = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      students.add(new Student("Bréchet Julien " + i));
+    }
+    students.add(new Student(""));
+    assertEquals(students.size(), RosterFile.write(students, file));
+    try (RosterFile roster = RosterFile.open(file)) {
+      assertEquals(students.size(), roster.size());
+      assertEquals("Bréchet Julien 4242", roster.getFullname(4242));
+      assertEquals(students, roster.asList());
+    }
+  }
+
+  @Test
+  public void writingShouldReplaceThePreviousRoster() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("roster.bin");
+    RosterFile.write(Arrays.asList(new Student("sacha"), new Student("olivier")), file);
+    RosterFile.write(Collections.<Student>emptyList(), file);
+    assertTrue(RosterFile.readStudents(file).isEmpty());
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  @Test(expected = IOException.class)
+  public void aFileWhichIsNotARosterShouldBeRejected() throws IOException {
+    Path file = folder.newFile("roster.csv").toPath();
+    Files.write(file, Arrays.asList("sacha", "olivier", "fabienne", "julien", "iando"), StandardCharsets.UTF_8);
+    RosterFile.open(file);
+  }
+
+}
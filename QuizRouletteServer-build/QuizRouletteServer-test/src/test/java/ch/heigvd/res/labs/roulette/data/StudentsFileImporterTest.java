@@ -0,0 +1,70 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class contains automated tests to validate the parallel import of
+ * roster files
+ */
+public class StudentsFileImporterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void itShouldReadOneStudentPerLine() throws IOException {
+    File file = folder.newFile("roster.csv");
+    Files.write(file.toPath(), "\uFEFFBréchet Julien\r\nCaduff Max\n\nCarnal Damien".getBytes(StandardCharsets.UTF_8));
+    List<Student> students = new StudentsFileImporter().readStudents(file.toPath());
+    assertEquals(Arrays.asList(new Student("Bréchet Julien"), new Student("Caduff Max"), new Student("Carnal Damien")), students);
+  }
+
+  @Test
+  public void itShouldKeepTheOrderOfTheFileAcrossSegments() throws IOException {
+    List<String> names = new ArrayList<>();
+    List<Student> expected = new ArrayList<>();
+    long size = 0;
+    for (int i = 0; size < 5L * StudentsFileImporter.MIN_SEGMENT_SIZE; i++) {
+      String name = "étudiant " + i;
+      names.add(name);
+      expected.add(new Student(name));
+      size += name.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+    File file = folder.newFile("large.csv");
+    Files.write(file.toPath(), names, StandardCharsets.UTF_8);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      IStudentsStore store = new IndexedStudentsStoreImpl();
+      long version = store.getVersion();
+      assertEquals(expected.size(), new StudentsFileImporter(pool).importFile(store, file.toPath()));
+      assertEquals(expected, store.listStudents());
+      assertEquals(version + 1, store.getVersion());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void anEmptyFileShouldNotContainAnyStudent() throws IOException {
+    File file = folder.newFile("empty.csv");
+    assertTrue(new StudentsFileImporter().readStudents(file.toPath()).isEmpty());
+  }
+
+  @Test(expected = IOException.class)
+  public void aMissingFileShouldNotBeImported() throws IOException {
+    new StudentsFileImporter().readStudents(new File(folder.getRoot(), "missing.csv").toPath());
+  }
+
+}
@@ -0,0 +1,75 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class contains automated tests to validate the snapshots of the data
+ * stores
+ */
+public class StudentsSnapshotterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void aRestoredStoreShouldHoldTheStudentsOfTheLastSnapshot() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("students.snapshot");
+    IStudentsStore store = new IndexedStudentsStoreImpl();
+    StudentsSnapshotter snapshotter = new StudentsSnapshotter(store, file);
+    assertEquals(0, snapshotter.restore());
+
+    store.addStudents(Arrays.asList(new Student("sacha"), new Student("olivier")));
+    assertTrue(snapshotter.snapshot());
+    assertFalse(snapshotter.snapshot());
+    store.addStudent(new Student("fabienne"));
+    snapshotter.close();
+
+    IStudentsStore restored = new SnapshotStudentsStoreImpl();
+    assertEquals(3, new StudentsSnapshotter(restored, file).restore());
+    assertEquals(store.listStudents(), restored.listStudents());
+  }
+
+  @Test
+  public void snapshotsShouldBeWrittenPeriodically() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("students.snapshot");
+    IStudentsStore store = new IndexedStudentsStoreImpl();
+    store.addStudent(new Student("sacha"));
+    StudentsSnapshotter snapshotter = new StudentsSnapshotter(store, file);
+    snapshotter.start(10, TimeUnit.MILLISECONDS);
+    try {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (!file.toFile().exists() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(Arrays.asList(new Student("sacha")), RosterFile.readStudents(file));
+    } finally {
+      snapshotter.close();
+    }
+  }
+
+  @Test
+  public void aZeroPeriodShouldOnlyWriteTheFinalSnapshot() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("students.snapshot");
+    IStudentsStore store = new IndexedStudentsStoreImpl();
+    store.addStudent(new Student("sacha"));
+    StudentsSnapshotter snapshotter = new StudentsSnapshotter(store, file);
+    snapshotter.start(0, TimeUnit.SECONDS);
+    Thread.sleep(50);
+    assertFalse(file.toFile().exists());
+    snapshotter.close();
+    assertEquals(Arrays.asList(new Student("sacha")), RosterFile.readStudents(file));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void aNegativePeriodShouldBeRejected() {
+    new StudentsSnapshotter(new IndexedStudentsStoreImpl(), folder.getRoot().toPath().resolve("students.snapshot")).start(-1, TimeUnit.SECONDS);
+  }
+
+}
@@ -0,0 +1,301 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * This class contains automated tests to validate that all implementations of
+ * the IStudentsStore contract behave the same way
+ */
+@RunWith(Parameterized.class)
+public class StudentsStoreTest {
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> stores() {
+    return Arrays.asList(new Object[][]{
+      {StudentsStoreImpl.class},
+      {IndexedStudentsStoreImpl.class},
+      {SnapshotStudentsStoreImpl.class}
+    });
+  }
+
+  private final Class<? extends IStudentsStore> storeClass;
+  private IStudentsStore store;
+
+  public StudentsStoreTest(Class<? extends IStudentsStore> storeClass) {
+    this.storeClass = storeClass;
+  }
+
+  @Before
+  public void createStore() throws Exception {
+    store = storeClass.getDeclaredConstructor().newInstance();
+  }
+
+  @Test
+  public void aNewStoreShouldBeEmpty() {
+    assertEquals(0, store.getNumberOfStudents());
+    assertTrue(store.listStudents().isEmpty());
+  }
+
+  @Test(expected = EmptyStoreException.class)
+  public void pickingARandomStudentInAnEmptyStoreShouldFail() throws EmptyStoreException {
+    store.pickRandomStudent();
+  }
+
+  @Test
+  public void studentsShouldBeListedInInsertionOrder() {
+    store.addStudent(new Student("sacha"));
+    store.addStudents(Arrays.asList(new Student("olivier"), new Student("fabienne")));
+    assertEquals(3, store.getNumberOfStudents());
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("fabienne")), store.listStudents());
+  }
+
+  @Test
+  public void theListOfStudentsShouldNotChangeWhenTheStoreChanges() {
+    store.addStudent(new Student("sacha"));
+    List<Student> students = store.listStudents();
+    store.addStudent(new Student("olivier"));
+    store.clear();
+    assertEquals(Arrays.asList(new Student("sacha")), students);
+  }
+
+  @Test
+  public void aSnapshotShouldNotChangeWhenTheStoreChanges() {
+    List<Student> students = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      students.add(new Student("student " + i));
+    }
+    store.addStudents(students);
+    Iterable<Student> snapshot = store.snapshotStudents();
+    store.addStudent(new Student("sacha"));
+    List<Student> iterated = new ArrayList<>();
+    for (Student student : snapshot) {
+      iterated.add(student);
+      if (iterated.size() == 1500) {
+        store.clear();
+        store.addStudent(new Student("olivier"));
+      }
+    }
+    assertEquals(students, iterated);
+  }
+
+  @Test
+  public void theVersionShouldIncreaseWhenTheContentChanges() {
+    long version = store.getVersion();
+    store.getNumberOfStudents();
+    store.listStudents();
+    assertEquals(version, store.getVersion());
+    store.addStudent(new Student("sacha"));
+    assertTrue(store.getVersion() > version);
+    version = store.getVersion();
+    store.addStudents(Arrays.asList(new Student("olivier")));
+    assertTrue(store.getVersion() > version);
+    version = store.getVersion();
+    store.clear();
+    assertTrue(store.getVersion() > version);
+  }
+
+  @Test
+  public void aVersionedSnapshotShouldHoldTheStudentsOfItsVersion() throws InterruptedException {
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < 5000; i++) {
+        store.addStudent(new Student("student " + i));
+      }
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      VersionedStudents snapshot = store.versionedSnapshotStudents();
+      List<Student> students = new ArrayList<>();
+      snapshot.getStudents().forEach(students::add);
+      StudentsChanges changes = store.changesSince(snapshot.getVersion());
+      if (!changes.isFullSnapshot()) {
+        students.addAll(changes.getStudents());
+        assertEquals(students.size(), new HashSet<>(students).size());
+      }
+    }
+    writer.join();
+  }
+
+  @Test
+  public void theChangesShouldListTheStudentsAddedSinceAVersion() {
+    store.addStudent(new Student("sacha"));
+    long version = store.getVersion();
+    store.addStudents(Arrays.asList(new Student("olivier"), new Student("fabienne")));
+    StudentsChanges changes = store.changesSince(version);
+    assertFalse(changes.isFullSnapshot());
+    assertEquals(store.getVersion(), changes.getVersion());
+    assertEquals(Arrays.asList(new Student("olivier"), new Student("fabienne")), changes.getStudents());
+    assertTrue(store.changesSince(store.getVersion()).getStudents().isEmpty());
+  }
+
+  @Test
+  public void theChangesShouldBeAFullSnapshotWhenTheVersionIsNotInTheLog() {
+    store.addStudent(new Student("sacha"));
+    long version = store.getVersion();
+    store.clear();
+    store.addStudent(new Student("olivier"));
+    StudentsChanges changes = store.changesSince(version);
+    assertTrue(changes.isFullSnapshot());
+    assertEquals(Arrays.asList(new Student("olivier")), changes.getStudents());
+
+    assertTrue(store.changesSince(-1).isFullSnapshot());
+    assertTrue(store.changesSince(store.getVersion() + 1).isFullSnapshot());
+
+    version = store.getVersion();
+    for (int i = 0; i < AbstractStudentsStore.CHANGE_LOG_SIZE; i++) {
+      store.addStudent(new Student("student " + i));
+    }
+    changes = store.changesSince(version);
+    assertTrue(changes.isFullSnapshot());
+    assertEquals(AbstractStudentsStore.CHANGE_LOG_SIZE + 1, changes.getStudents().size());
+    assertFalse(store.changesSince(version + 1).isFullSnapshot());
+    assertEquals(AbstractStudentsStore.CHANGE_LOG_SIZE - 1, store.changesSince(version + 1).getStudents().size());
+  }
+
+  @Test
+  public void pagesShouldNotMoveWhenStudentsAreAdded() {
+    store.addStudents(Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("fabienne")));
+    StudentsPage first = store.pageOfStudents(0, 2);
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier")), first.getStudents());
+    assertFalse(first.isLast());
+
+    store.addStudent(new Student("julien"));
+    StudentsPage second = store.pageOfStudents(2, 2);
+    assertEquals(Arrays.asList(new Student("fabienne"), new Student("julien")), second.getStudents());
+    assertTrue(second.isLast());
+    assertEquals(first.getEpoch(), second.getEpoch());
+
+    store.clear();
+    StudentsPage afterClear = store.pageOfStudents(2, 2);
+    assertTrue(afterClear.getStudents().isEmpty());
+    assertTrue(afterClear.isLast());
+    assertNotEquals(first.getEpoch(), afterClear.getEpoch());
+  }
+
+  @Test
+  public void clearShouldRemoveAllStudents() {
+    store.addStudents(Arrays.asList(new Student("olivier"), new Student("fabienne")));
+    store.clear();
+    assertEquals(0, store.getNumberOfStudents());
+    store.addStudent(new Student("sacha"));
+    assertEquals(Arrays.asList(new Student("sacha")), store.listStudents());
+  }
+
+  @Test
+  public void randomStudentsShouldBeTakenFromTheStore() throws EmptyStoreException {
+    List<Student> students = Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("fabienne"));
+    store.addStudents(students);
+    Set<Student> picked = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      Student student = store.pickRandomStudent();
+      assertTrue(students.contains(student));
+      picked.add(student);
+    }
+    assertEquals(3, picked.size());
+  }
+
+  @Test
+  public void storesWithTheSameSeedShouldPickTheSameStudents() throws Exception {
+    List<Student> students = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      students.add(new Student("student " + i));
+    }
+    IStudentsStore first = storeClass.getDeclaredConstructor(IRandomSource.class).newInstance(new SeededRandomSource(42));
+    IStudentsStore second = storeClass.getDeclaredConstructor(IRandomSource.class).newInstance(new SeededRandomSource(42));
+    first.addStudents(students);
+    second.addStudents(students);
+    List<Student> firstPicks = new ArrayList<>();
+    List<Student> secondPicks = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      firstPicks.add(first.pickRandomStudent());
+      secondPicks.add(second.pickRandomStudent());
+    }
+    assertEquals(firstPicks, secondPicks);
+    assertTrue(new HashSet<>(firstPicks).size() > 1);
+  }
+
+  @Test
+  public void importDataShouldReadStudentsUntilTheEndOfDataMarker() throws IOException {
+    BufferedReader reader = new BufferedReader(new StringReader("sacha\nolivier\nendofdata\nINFO\n"));
+    store.importData(reader);
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier")), store.listStudents());
+    assertEquals("INFO", reader.readLine());
+  }
+
+  @Test
+  public void aCountedImportShouldReadTheAnnouncedNumberOfLines() throws IOException {
+    BufferedReader reader = new BufferedReader(new StringReader("sacha\nENDOFDATA\nINFO\n"));
+    assertEquals(2, store.importData(reader, 2));
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("ENDOFDATA")), store.listStudents());
+    assertEquals("INFO", reader.readLine());
+  }
+
+  @Test
+  public void aCountedImportShouldNotAddAnythingWhenTheStreamEndsTooEarly() {
+    BufferedReader reader = new BufferedReader(new StringReader("sacha\nolivier\n"));
+    try {
+      store.importData(reader, 3);
+      fail("The stream ends before the third student");
+    } catch (IOException expected) {
+    }
+    assertEquals(0, store.getNumberOfStudents());
+  }
+
+  @Test
+  public void aChunkVisibleImportShouldAddEveryChunkAsSoonAsItIsComplete() throws IOException {
+    AbstractStudentsStore chunkedStore = (AbstractStudentsStore) store;
+    chunkedStore.setImportMode(ImportMode.CHUNK_VISIBLE);
+    chunkedStore.setImportChunkSize(2);
+    List<Integer> visible = new ArrayList<>();
+    StudentsImport studentsImport = store.beginImport(-1, numberOfStudents -> visible.add(store.getNumberOfStudents()));
+    studentsImport.addStudent(new Student("sacha"));
+    assertEquals(0, store.getNumberOfStudents());
+    studentsImport.addStudent(new Student("olivier"));
+    studentsImport.addStudent(new Student("fabienne"));
+    assertEquals(2, store.getNumberOfStudents());
+    assertEquals(3, studentsImport.finish());
+    assertEquals(Arrays.asList(2), visible);
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("fabienne")), store.listStudents());
+  }
+
+  @Test
+  public void anAllOrNothingImportShouldReportItsProgressButAddTheStudentsAtTheEnd() throws IOException {
+    ((AbstractStudentsStore) store).setImportChunkSize(2);
+    List<Integer> reports = new ArrayList<>();
+    BufferedReader reader = new BufferedReader(new StringReader("sacha\nolivier\nfabienne\njulien\nendofdata\n"));
+    assertEquals(4, store.importData(reader, numberOfStudents -> {
+      reports.add(numberOfStudents);
+      assertEquals(0, store.getNumberOfStudents());
+    }));
+    assertEquals(Arrays.asList(2, 4), reports);
+    assertEquals(4, store.getNumberOfStudents());
+  }
+
+  @Test
+  public void aChunkVisibleCountedImportShouldKeepTheChunksAddedBeforeTheStreamEnds() {
+    AbstractStudentsStore chunkedStore = (AbstractStudentsStore) store;
+    chunkedStore.setImportMode(ImportMode.CHUNK_VISIBLE);
+    chunkedStore.setImportChunkSize(2);
+    BufferedReader reader = new BufferedReader(new StringReader("sacha\nolivier\nfabienne\n"));
+    try {
+      store.importData(reader, 4);
+      fail("The stream ends before the fourth student");
+    } catch (IOException expected) {
+    }
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier")), store.listStudents());
+  }
+
+}
@@ -0,0 +1,133 @@
+package ch.heigvd.res.labs.roulette.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class contains automated tests to validate the persistence of the
+ * students in a write-ahead log
+ */
+public class WriteAheadLogStudentsStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path logFile;
+
+  @Before
+  public void createLogFile() throws IOException {
+    logFile = folder.getRoot().toPath().resolve("students.wal");
+  }
+
+  private WriteAheadLogStudentsStore openStore() throws IOException {
+    return new WriteAheadLogStudentsStore(new IndexedStudentsStoreImpl(), logFile);
+  }
+
+  @Test
+  public void theStudentsShouldSurviveARestart() throws IOException {
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      store.addStudent(new Student("sacha"));
+      store.addStudents(Arrays.asList(new Student("olivier"), new Student("Bréchet Julien")));
+    }
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("Bréchet Julien")), store.listStudents());
+      store.importData(new BufferedReader(new StringReader("fabienne\nENDOFDATA\n")));
+    }
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      assertEquals(4, store.getNumberOfStudents());
+    }
+  }
+
+  @Test
+  public void aClearShouldSurviveARestart() throws IOException {
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      store.addStudent(new Student("sacha"));
+      store.clear();
+      store.addStudent(new Student("olivier"));
+    }
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      assertEquals(Arrays.asList(new Student("olivier")), store.listStudents());
+    }
+  }
+
+  @Test
+  public void anIncompleteRecordShouldBeDiscarded() throws IOException {
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      store.addStudent(new Student("sacha"));
+      store.addStudent(new Student("olivier"));
+    }
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      assertEquals(Arrays.asList(new Student("sacha")), store.listStudents());
+      store.addStudent(new Student("fabienne"));
+    }
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      assertEquals(Arrays.asList(new Student("sacha"), new Student("fabienne")), store.listStudents());
+    }
+  }
+
+  @Test
+  public void aCorruptedRecordShouldBeDiscarded() throws IOException {
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      store.addStudent(new Student("sacha"));
+      store.addStudent(new Student("olivier"));
+    }
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{'X'}), channel.size() - 1);
+    }
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      assertEquals(Arrays.asList(new Student("sacha")), store.listStudents());
+    }
+  }
+
+  @Test
+  public void concurrentLoadsShouldAllBeDurable() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      List<Future<?>> loads = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        final int loader = i;
+        loads.add(executor.submit(() -> {
+          for (int j = 0; j < 50; j++) {
+            store.addStudents(Arrays.asList(new Student(loader + "-" + j + "-a"), new Student(loader + "-" + j + "-b")));
+          }
+        }));
+      }
+      for (Future<?> load : loads) {
+        load.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    try (WriteAheadLogStudentsStore store = openStore()) {
+      List<Student> students = store.listStudents();
+      assertEquals(8 * 50 * 2, students.size());
+      assertEquals(8 * 50 * 2, new HashSet<>(students).size());
+      // the two students of a LOAD are next to each other in the log
+      for (int i = 0; i < students.size(); i += 2) {
+        String first = students.get(i).getFullname();
+        assertEquals(first.substring(0, first.length() - 1) + "b", students.get(i + 1).getFullname());
+      }
+    }
+  }
+
+}
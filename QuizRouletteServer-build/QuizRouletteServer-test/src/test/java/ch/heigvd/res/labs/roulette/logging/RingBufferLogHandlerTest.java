@@ -0,0 +1,88 @@
+package ch.heigvd.res.labs.roulette.logging;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate that the RingBufferLogHandler
+ * hands the records over to its delegate in the background, without ever
+ * blocking the threads which log
+ */
+public class RingBufferLogHandlerTest {
+
+  private static class RecordingHandler extends Handler {
+
+    final List<LogRecord> records = new CopyOnWriteArrayList<>();
+    final CountDownLatch release;
+    volatile boolean closed;
+
+    RecordingHandler(boolean blocked) {
+      release = new CountDownLatch(blocked ? 1 : 0);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+      try {
+        release.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      records.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  @Test
+  public void recordsShouldBeHandedOverInOrder() throws InterruptedException {
+    RecordingHandler delegate = new RecordingHandler(false);
+    RingBufferLogHandler handler = new RingBufferLogHandler(delegate, 16);
+    for (int i = 0; i < 100; i++) {
+      handler.publish(new LogRecord(Level.INFO, "record " + i));
+      if (i % 10 == 0) {
+        handler.flush();
+      }
+    }
+    handler.flush();
+    assertEquals(100, delegate.records.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals("record " + i, delegate.records.get(i).getMessage());
+    }
+    handler.close();
+    assertTrue(delegate.closed);
+  }
+
+  @Test
+  public void recordsShouldBeDroppedAndReportedWhenTheBufferIsFull() throws InterruptedException {
+    RecordingHandler delegate = new RecordingHandler(true);
+    RingBufferLogHandler handler = new RingBufferLogHandler(delegate, 4);
+    long start = System.nanoTime();
+    for (int i = 0; i < 1000; i++) {
+      handler.publish(new LogRecord(Level.INFO, "record " + i));
+    }
+    assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+    assertTrue(handler.getDroppedRecords() > 0);
+
+    delegate.release.countDown();
+    handler.close();
+    LogRecord last = delegate.records.get(delegate.records.size() - 1);
+    assertEquals(Level.WARNING, last.getLevel());
+    assertTrue((Long) last.getParameters()[0] > 0);
+    assertTrue(delegate.records.size() < 1000);
+  }
+
+}
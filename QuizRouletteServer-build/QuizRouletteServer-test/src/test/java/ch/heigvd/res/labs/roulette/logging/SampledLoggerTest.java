@@ -0,0 +1,95 @@
+package ch.heigvd.res.labs.roulette.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the sampling and the rate
+ * limit applied by the SampledLogger
+ */
+public class SampledLoggerTest {
+
+  private Logger logger;
+  private final List<LogRecord> records = new ArrayList<>();
+  private final Handler recorder = new Handler() {
+    @Override
+    public void publish(LogRecord record) {
+      records.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  @Before
+  public void createLogger() {
+    logger = Logger.getLogger(SampledLoggerTest.class.getName());
+    logger.setUseParentHandlers(false);
+    logger.addHandler(recorder);
+  }
+
+  @After
+  public void removeRecorder() {
+    logger.removeHandler(recorder);
+  }
+
+  @Test
+  public void onlyOneMessageOutOfTheSampleRateShouldBeLogged() {
+    SampledLogger sampledLogger = new SampledLogger(logger, "test", 10, 0);
+    for (int i = 0; i < 100; i++) {
+      sampledLogger.log(Level.INFO, "message {0}", i);
+    }
+    assertEquals("message {0}", records.get(0).getMessage());
+    assertEquals(0, records.get(0).getParameters()[0]);
+    assertEquals(10, records.get(1).getParameters()[0]);
+    assertEquals("({0} similar messages not logged)", records.get(2).getMessage());
+    assertEquals(9L, records.get(2).getParameters()[0]);
+    assertEquals(9L, sampledLogger.getSuppressedMessages());
+  }
+
+  @Test
+  public void theRateOfMessagesShouldBeLimited() {
+    SampledLogger sampledLogger = new SampledLogger(logger, "test", 1, 5);
+    for (int i = 0; i < 1000; i++) {
+      sampledLogger.log(Level.INFO, "message {0}", i);
+    }
+    assertTrue(records.size() < 1000);
+    assertTrue(sampledLogger.getSuppressedMessages() > 0);
+  }
+
+  @Test
+  public void messagesBelowTheLoggerLevelShouldBeIgnored() {
+    SampledLogger sampledLogger = new SampledLogger(logger, "test", 1, 0);
+    sampledLogger.log(Level.FINEST, "message {0}", 1);
+    assertTrue(records.isEmpty());
+    assertEquals(0, sampledLogger.getSuppressedMessages());
+  }
+
+  @Test
+  public void theSystemPropertiesShouldOverrideTheDefaults() {
+    System.setProperty("roulette.log.overridden.sampleRate", "1000");
+    try {
+      SampledLogger sampledLogger = new SampledLogger(logger, "overridden", 1, 0);
+      for (int i = 0; i < 100; i++) {
+        sampledLogger.log(Level.INFO, "message {0}", i);
+      }
+      assertEquals(1, records.size());
+    } finally {
+      System.clearProperty("roulette.log.overridden.sampleRate");
+    }
+  }
+
+}
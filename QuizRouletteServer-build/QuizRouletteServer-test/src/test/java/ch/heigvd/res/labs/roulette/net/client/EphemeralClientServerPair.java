@@ -1,7 +1,9 @@
 package ch.heigvd.res.labs.roulette.net.client;
 
 import ch.heigvd.res.labs.roulette.net.protocol.RouletteV1Protocol;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV3Protocol;
 import ch.heigvd.res.labs.roulette.net.server.RouletteServer;
+import ch.heigvd.res.labs.roulette.net.server.ServerMode;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -16,17 +18,25 @@ public class EphemeralClientServerPair extends ExternalResource {
   RouletteServer server;
   IRouletteV1Client client;
   String protocolVersion;
+  ServerMode serverMode;
 
   public EphemeralClientServerPair(String protocolVersion) {
+    this(protocolVersion, ServerMode.BLOCKING);
+  }
+
+  public EphemeralClientServerPair(String protocolVersion, ServerMode serverMode) {
     this.protocolVersion = protocolVersion;
+    this.serverMode = serverMode;
   }
 
   @Override
   protected void before() throws Throwable {
-    server = new RouletteServer(protocolVersion);
+    server = new RouletteServer(protocolVersion, serverMode);
     server.startServer();
     if (RouletteV1Protocol.VERSION.equals(protocolVersion)) {
       client = new RouletteV1ClientImpl();
+    } else if (RouletteV3Protocol.VERSION.equals(protocolVersion)) {
+      client = new RouletteV3ClientImpl();
     } else {
       client = new RouletteV2ClientImpl();
     }
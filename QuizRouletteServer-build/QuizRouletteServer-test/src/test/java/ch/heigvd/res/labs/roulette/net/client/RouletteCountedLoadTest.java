@@ -0,0 +1,131 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.protocol.ByeCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.LoadCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV1Protocol;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.server.ServerMode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * This class contains automated tests to validate the counted form of the LOAD
+ * command (LOAD count, without the ENDOFDATA marker), in both server modes
+ */
+@RunWith(Parameterized.class)
+public class RouletteCountedLoadTest {
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> modes() {
+    return Arrays.asList(new Object[][]{
+      {ServerMode.BLOCKING},
+      {ServerMode.NON_BLOCKING}
+    });
+  }
+
+  @Rule
+  public EphemeralClientServerPair roulettePair;
+
+  public RouletteCountedLoadTest(ServerMode mode) {
+    roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION, mode);
+  }
+
+  @Test
+  public void theServerShouldReadTheAnnouncedNumberOfStudents() throws IOException {
+    try (Socket socket = new Socket("localhost", roulettePair.getServer().getPort())) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+      reader.readLine();
+
+      writer.print("LOAD 2\nsacha\nENDOFDATA\nload 0\n");
+      writer.flush();
+      assertEquals(RouletteV1Protocol.RESPONSE_COUNTED_LOAD_START, reader.readLine());
+      assertEquals(2, JsonObjectMapper.parseJson(reader.readLine(), LoadCommandResponse.class).getNumberOfNewStudents());
+      assertEquals(RouletteV1Protocol.RESPONSE_COUNTED_LOAD_START, reader.readLine());
+      assertEquals(0, JsonObjectMapper.parseJson(reader.readLine(), LoadCommandResponse.class).getNumberOfNewStudents());
+
+      writer.println("LOAD -3");
+      writer.flush();
+      assertTrue(reader.readLine().startsWith("Huh?"));
+    }
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("ENDOFDATA")), client.listStudents());
+  }
+
+  @Test
+  public void theClientShouldAnnounceTheNumberOfStudents() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudent("sacha");
+    client.loadStudents(Arrays.asList(new Student("olivier"), new Student("fabienne")));
+    assertEquals(3, client.getNumberOfStudents());
+  }
+
+  @Test
+  public void theClientShouldFallBackToThePlainLoadWhenTheServerDoesNotKnowTheCountedOne() throws Exception {
+    List<String> commands = Collections.synchronizedList(new ArrayList<>());
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      Thread server = new Thread(() -> serveWithPlainLoadOnly(serverSocket, commands));
+      server.start();
+      IRouletteV2Client client = new RouletteV2ClientImpl();
+      client.connect("localhost", serverSocket.getLocalPort());
+      client.loadStudent("sacha");
+      client.loadStudents(Arrays.asList(new Student("olivier"), new Student("fabienne")));
+      client.disconnect();
+      server.join();
+    }
+    assertEquals(Arrays.asList("LOAD 1", "LOAD", "sacha", "LOAD", "olivier", "fabienne", "BYE"), commands);
+  }
+
+  /*
+   * Serves a single session like a server which only knows the LOAD command
+   * ended by the ENDOFDATA marker (neither the counted LOAD nor LOAD PROGRESS),
+   * recording the lines it receives
+   */
+  static void serveWithPlainLoadOnly(ServerSocket serverSocket, List<String> received) {
+    try (Socket socket = serverSocket.accept()) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+      writer.println("Hello. Online HELP is available. Will you find it?");
+      String line;
+      while ((line = reader.readLine()) != null) {
+        received.add(line);
+        if (RouletteV2Protocol.CMD_LOAD.equals(line)) {
+          writer.println(RouletteV2Protocol.RESPONSE_LOAD_START);
+          int numberOfNewStudents = 0;
+          while (!(line = reader.readLine()).equals(RouletteV2Protocol.CMD_LOAD_ENDOFDATA_MARKER)) {
+            received.add(line);
+            numberOfNewStudents++;
+          }
+          writer.println(JsonObjectMapper.toJson(new LoadCommandResponse(LoadCommandResponse.SUCCESS, numberOfNewStudents)));
+        } else if (RouletteV2Protocol.CMD_BYE.equals(line)) {
+          writer.println(JsonObjectMapper.toJson(new ByeCommandResponse(ByeCommandResponse.SUCCESS, received.size())));
+          return;
+        } else {
+          writer.println("Huh? please use HELP if you don't know what commands are available.");
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+}
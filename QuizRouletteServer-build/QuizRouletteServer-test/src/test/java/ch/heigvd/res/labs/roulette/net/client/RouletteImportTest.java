@@ -0,0 +1,114 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.IStudentsStore;
+import ch.heigvd.res.labs.roulette.data.IndexedStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsFileImporter;
+import ch.heigvd.res.labs.roulette.net.protocol.LoadCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.server.RouletteServer;
+import ch.heigvd.res.labs.roulette.net.server.RouletteV2ClientHandler;
+import ch.heigvd.res.labs.roulette.net.server.ServerMode;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class contains automated tests to validate the IMPORT command of the
+ * Roulette protocol (version 2)
+ */
+public class RouletteImportTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private RouletteServer server;
+  private IRouletteV2Client client;
+
+  @Before
+  public void startServer() throws IOException {
+    File importDirectory = folder.newFolder("rosters");
+    Files.write(new File(importDirectory, "res.csv").toPath(), Arrays.asList("sacha", "olivier"), StandardCharsets.UTF_8);
+    Files.write(folder.newFile("secret.csv").toPath(), Arrays.asList("fabienne"), StandardCharsets.UTF_8);
+
+    server = new RouletteServer(RouletteV2Protocol.VERSION);
+    server.setImportDirectory(importDirectory.toPath());
+    server.startServer();
+    client = new RouletteV2ClientImpl();
+    client.connect("localhost", server.getPort());
+  }
+
+  @After
+  public void stopServer() throws IOException {
+    client.disconnect();
+    server.stopServer();
+  }
+
+  @Test
+  public void theServerShouldImportTheFilesOfItsImportDirectory() throws IOException {
+    assertEquals(2, client.importFile("res.csv"));
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier")), client.listStudents());
+  }
+
+  @Test
+  public void theServerShouldRefuseTheFilesOutsideOfItsImportDirectory() throws IOException {
+    try {
+      client.importFile("../secret.csv");
+      fail("The file is outside of the import directory");
+    } catch (IOException expected) {
+    }
+    try {
+      client.importFile("missing.csv");
+      fail("The file does not exist");
+    } catch (IOException expected) {
+    }
+    assertEquals(0, client.getNumberOfStudents());
+  }
+
+  @Test
+  public void theEventLoopsShouldNotImportFiles() throws IOException {
+    IStudentsStore store = new IndexedStudentsStoreImpl();
+    RouletteV2ClientHandler handler = new RouletteV2ClientHandler(store);
+    handler.setImportDirectory(new File(folder.getRoot(), "rosters").toPath(), new StudentsFileImporter());
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    handler.handleSessionStart(os);
+    os.reset();
+    handler.handleLine("IMPORT res.csv", os);
+    assertEquals(LoadCommandResponse.FAILURE, JsonObjectMapper.parseJson(os.toString().trim(), LoadCommandResponse.class).getStatus());
+    assertEquals(0, store.getNumberOfStudents());
+
+    os.reset();
+    handler.handleLine("HELP", os);
+    assertFalse(os.toString().contains(RouletteV2Protocol.CMD_IMPORT));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void aNonBlockingServerShouldNotStartWithAnImportDirectory() throws IOException {
+    RouletteServer nonBlocking = new RouletteServer(-1, RouletteV2Protocol.VERSION, ServerMode.NON_BLOCKING);
+    nonBlocking.setImportDirectory(folder.getRoot().toPath());
+    nonBlocking.startServer();
+  }
+
+  @Test
+  public void theServerShouldRefuseTheLinksToFilesOutsideOfItsImportDirectory() throws IOException {
+    File link = new File(folder.getRoot(), "rosters/link.csv");
+    Files.createSymbolicLink(link.toPath(), new File(folder.getRoot(), "secret.csv").toPath());
+    try {
+      client.importFile("link.csv");
+      fail("The link leads outside of the import directory");
+    } catch (IOException expected) {
+    }
+    assertEquals(0, client.getNumberOfStudents());
+  }
+
+}
@@ -0,0 +1,78 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
+import ch.heigvd.res.labs.roulette.net.protocol.MetricsCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.server.ServerMode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collection;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * This class contains automated tests to validate the METRICS command of the
+ * Roulette protocol (version 2), in both server modes
+ */
+@RunWith(Parameterized.class)
+public class RouletteMetricsTest {
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> modes() {
+    return Arrays.asList(new Object[][]{
+      {ServerMode.BLOCKING},
+      {ServerMode.NON_BLOCKING}
+    });
+  }
+
+  @Rule
+  public EphemeralClientServerPair roulettePair;
+
+  public RouletteMetricsTest(ServerMode mode) {
+    roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION, mode);
+  }
+
+  private MetricsCommandResponse fetchMetrics(PrintWriter writer, BufferedReader reader) throws IOException {
+    writer.println(RouletteV2Protocol.CMD_METRICS);
+    writer.flush();
+    return JsonObjectMapper.parseJson(reader.readLine(), MetricsCommandResponse.class);
+  }
+
+  @Test
+  public void theServerShouldCountTheCommandsOfAllSessions() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudent("sacha");
+    client.getNumberOfStudents();
+    client.getNumberOfStudents();
+
+    try (Socket socket = new Socket("localhost", roulettePair.getServer().getPort())) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+      reader.readLine();
+      writer.println("random");
+      writer.flush();
+      reader.readLine();
+
+      MetricsCommandResponse metrics = fetchMetrics(writer, reader);
+      assertEquals(1, metrics.getCommands().get(RouletteV2Protocol.CMD_LOAD).getCount());
+      assertEquals(2, metrics.getCommands().get(RouletteV2Protocol.CMD_INFO).getCount());
+      assertEquals(1, metrics.getCommands().get(RouletteV2Protocol.CMD_RANDOM).getCount());
+      assertEquals(0, metrics.getCommands().get(RouletteV2Protocol.CMD_LIST).getCount());
+      assertTrue(metrics.getUptimeSeconds() >= 0);
+
+      MetricsCommandResponse.CommandStatistics info = metrics.getCommands().get(RouletteV2Protocol.CMD_INFO);
+      assertTrue(info.getP50Micros() <= info.getP99Micros());
+      assertTrue(info.getP99Micros() <= info.getMaxMicros());
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the pipelines of the
+ * Roulette client (version 2): commands sent at once, with their replies read
+ * in order
+ */
+public class RoulettePipelineTest {
+
+  @Rule
+  public EphemeralClientServerPair roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION);
+
+  @Test
+  public void theRepliesShouldBeResolvedInOrder() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    IRoulettePipeline pipeline = client.pipeline();
+    CompletableFuture<Integer> before = pipeline.getNumberOfStudents();
+    CompletableFuture<Void> load = pipeline.loadStudents(Arrays.asList(new Student("sacha"), new Student("olivier")));
+    List<CompletableFuture<Student>> picks = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      picks.add(pipeline.pickRandomStudent());
+    }
+    CompletableFuture<String> version = pipeline.getProtocolVersion();
+    CompletableFuture<List<Student>> list = pipeline.listStudents();
+    CompletableFuture<Void> clear = pipeline.clearDataStore();
+    CompletableFuture<Integer> after = pipeline.getNumberOfStudents();
+    assertEquals(16, pipeline.size());
+    assertFalse(before.isDone());
+
+    pipeline.execute();
+    assertEquals(0, pipeline.size());
+    assertEquals(0, (int) before.join());
+    assertNull(load.join());
+    for (CompletableFuture<Student> pick : picks) {
+      assertTrue(Arrays.asList("sacha", "olivier").contains(pick.join().getFullname()));
+    }
+    assertEquals(RouletteV2Protocol.VERSION, version.join());
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier")), list.join());
+    assertTrue(clear.isDone());
+    assertEquals(0, (int) after.join());
+
+    // the client can still be used, and so can the pipeline
+    assertEquals(0, client.getNumberOfStudents());
+    CompletableFuture<Integer> again = pipeline.getNumberOfStudents();
+    pipeline.execute();
+    assertEquals(0, (int) again.join());
+  }
+
+  @Test
+  public void anEmptyStoreShouldOnlyFailTheRandomCommands() throws IOException {
+    IRoulettePipeline pipeline = ((IRouletteV2Client) roulettePair.getClient()).pipeline();
+    CompletableFuture<Student> pick = pipeline.pickRandomStudent();
+    CompletableFuture<Integer> count = pipeline.getNumberOfStudents();
+    pipeline.execute();
+
+    try {
+      pick.join();
+      fail("RANDOM should fail on an empty store");
+    } catch (CompletionException ex) {
+      assertTrue(ex.getCause() instanceof EmptyStoreException);
+    }
+    assertEquals(0, (int) count.join());
+  }
+
+  @Test
+  public void anEmptyPipelineShouldSendNothing() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.pipeline().execute();
+    assertEquals(RouletteV2Protocol.VERSION, client.getProtocolVersion());
+  }
+
+}
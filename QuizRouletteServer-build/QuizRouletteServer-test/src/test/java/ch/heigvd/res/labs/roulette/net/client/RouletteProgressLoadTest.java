@@ -0,0 +1,89 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.AbstractStudentsStore;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.server.ServerMode;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * This class contains automated tests to validate the LOAD PROGRESS command of
+ * the Roulette protocol (version 2), in both server modes
+ */
+@RunWith(Parameterized.class)
+public class RouletteProgressLoadTest {
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> modes() {
+    return Arrays.asList(new Object[][]{
+      {ServerMode.BLOCKING},
+      {ServerMode.NON_BLOCKING}
+    });
+  }
+
+  @Rule
+  public EphemeralClientServerPair roulettePair;
+
+  public RouletteProgressLoadTest(ServerMode mode) {
+    roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION, mode);
+  }
+
+  @Test
+  public void theServerShouldReportItsProgressAfterEveryChunk() throws IOException {
+    int chunkSize = AbstractStudentsStore.DEFAULT_IMPORT_CHUNK_SIZE;
+    List<Student> students = new ArrayList<>();
+    for (int i = 0; i < 2 * chunkSize + 10; i++) {
+      students.add(new Student("student " + i));
+    }
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    List<Integer> reports = new ArrayList<>();
+    client.loadStudents(students, reports::add);
+    assertEquals(Arrays.asList(chunkSize, 2 * chunkSize), reports);
+    assertEquals(students.size(), client.getNumberOfStudents());
+
+    reports.clear();
+    client.loadStudents(Arrays.asList(new Student("sacha")), reports::add);
+    assertTrue(reports.isEmpty());
+    assertEquals(students.size() + 1, client.getNumberOfStudents());
+  }
+
+  @Test
+  public void theClientShouldFallBackToThePlainLoadWhenTheServerDoesNotKnowTheProgressOne() throws Exception {
+    List<String> commands = Collections.synchronizedList(new ArrayList<>());
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      Thread server = new Thread(() -> RouletteCountedLoadTest.serveWithPlainLoadOnly(serverSocket, commands));
+      server.start();
+      IRouletteV2Client client = new RouletteV2ClientImpl();
+      client.connect("localhost", serverSocket.getLocalPort());
+      List<Integer> reports = new ArrayList<>();
+      client.loadStudents(Arrays.asList(new Student("CLEAR"), new Student("sacha")), reports::add);
+      client.disconnect();
+      server.join();
+      assertTrue(reports.isEmpty());
+    }
+    assertEquals(Arrays.asList("LOAD PROGRESS", "LOAD", "CLEAR", "sacha", "BYE"), commands);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void aMissingListenerShouldBeRejectedBeforeTheLoadStarts() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    try {
+      client.loadStudents(Arrays.asList(new Student("sacha")), null);
+    } finally {
+      assertEquals(0, client.getNumberOfStudents());
+    }
+  }
+
+}
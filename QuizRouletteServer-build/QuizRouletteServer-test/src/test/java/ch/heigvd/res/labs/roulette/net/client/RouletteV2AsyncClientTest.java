@@ -0,0 +1,116 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.server.ServerMode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the asynchronous client of
+ * the Roulette protocol (version 2)
+ */
+public class RouletteV2AsyncClientTest {
+
+  @Rule
+  public EphemeralClientServerPair roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION, ServerMode.NON_BLOCKING);
+
+  private IRouletteAsyncClient connectedClient() {
+    IRouletteAsyncClient client = new RouletteV2AsyncClientImpl();
+    client.connect("localhost", roulettePair.getServer().getPort()).join();
+    return client;
+  }
+
+  @Test
+  public void theClientShouldLoadListAndClearStudents() {
+    IRouletteAsyncClient client = connectedClient();
+    assertTrue(client.isConnected());
+    assertEquals(RouletteV2Protocol.VERSION, client.getProtocolVersion().join());
+
+    // the commands are all in flight at once, and resolved in order
+    CompletableFuture<Void> load = client.loadStudents(Arrays.asList(new Student("sacha"), new Student("olivier")));
+    CompletableFuture<Void> loadOne = client.loadStudent("julien");
+    CompletableFuture<Integer> count = client.getNumberOfStudents();
+    CompletableFuture<Student> pick = client.pickRandomStudent();
+    CompletableFuture<List<Student>> list = client.listStudents();
+    CompletableFuture<Void> clear = client.clearDataStore();
+    CompletableFuture<Integer> countAfterClear = client.getNumberOfStudents();
+
+    assertNull(load.join());
+    assertNull(loadOne.join());
+    assertEquals(3, (int) count.join());
+    assertTrue(Arrays.asList("sacha", "olivier", "julien").contains(pick.join().getFullname()));
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("julien")), list.join());
+    assertNull(clear.join());
+    assertEquals(0, (int) countAfterClear.join());
+
+    client.disconnect().join();
+    assertFalse(client.isConnected());
+  }
+
+  @Test
+  public void pickingARandomStudentInAnEmptyStoreShouldFailItsFutureOnly() {
+    IRouletteAsyncClient client = connectedClient();
+    CompletableFuture<Student> pick = client.pickRandomStudent();
+    CompletableFuture<Integer> count = client.getNumberOfStudents();
+    try {
+      pick.join();
+      fail("RANDOM should fail on an empty store");
+    } catch (CompletionException ex) {
+      assertTrue(ex.getCause() instanceof EmptyStoreException);
+    }
+    assertEquals(0, (int) count.join());
+    client.disconnect().join();
+  }
+
+  @Test(timeout = 30000)
+  public void commandsSentWhileConnectingShouldBeWrittenOnceConnected() {
+    IRouletteAsyncClient client = new RouletteV2AsyncClientImpl();
+    CompletableFuture<Void> connect = client.connect("localhost", roulettePair.getServer().getPort());
+    CompletableFuture<Void> load = client.loadStudent("sacha");
+    CompletableFuture<Integer> count = client.getNumberOfStudents();
+    assertNull(connect.join());
+    assertTrue(client.isConnected());
+    assertNull(load.join());
+    assertEquals(1, (int) count.join());
+    client.disconnect().join();
+  }
+
+  @Test(timeout = 30000)
+  public void oneThreadShouldDriveManySessions() throws IOException {
+    // stay below the accept backlog of the server: all the clients connect at once
+    int numberOfClients = 40;
+    List<IRouletteAsyncClient> clients = new ArrayList<>();
+    List<CompletableFuture<Void>> sessions = new ArrayList<>();
+    for (int i = 0; i < numberOfClients; i++) {
+      IRouletteAsyncClient client = new RouletteV2AsyncClientImpl();
+      clients.add(client);
+      String name = "student " + i;
+      sessions.add(client.connect("localhost", roulettePair.getServer().getPort())
+        .thenCompose(connected -> client.loadStudent(name))
+        .thenCompose(loaded -> client.pickRandomStudent())
+        .thenCompose(student -> client.disconnect()));
+    }
+    CompletableFuture.allOf(sessions.toArray(new CompletableFuture[0])).join();
+    for (IRouletteAsyncClient client : clients) {
+      assertFalse(client.isConnected());
+    }
+    assertEquals(numberOfClients, roulettePair.getClient().getNumberOfStudents());
+  }
+
+  @Test
+  public void commandsShouldFailWhenTheClientIsNotConnected() {
+    IRouletteAsyncClient client = new RouletteV2AsyncClientImpl();
+    assertFalse(client.isConnected());
+    assertTrue(client.getNumberOfStudents().isCompletedExceptionally());
+  }
+
+}
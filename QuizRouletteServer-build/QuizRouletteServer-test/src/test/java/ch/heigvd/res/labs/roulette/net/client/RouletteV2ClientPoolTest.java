@@ -0,0 +1,130 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the pool of Roulette
+ * clients (version 2)
+ */
+public class RouletteV2ClientPoolTest {
+
+  @Rule
+  public EphemeralClientServerPair roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION);
+
+  private RouletteV2ClientPool pool;
+
+  @After
+  public void closePool() {
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
+  private RouletteV2ClientPool newPool(int minIdle, int maxIdle) throws IOException {
+    pool = new RouletteV2ClientPool("localhost", roulettePair.getServer().getPort(), minIdle, maxIdle);
+    return pool;
+  }
+
+  @Test
+  public void thePoolShouldOpenMinIdleConnectionsAndReuseThem() throws IOException {
+    newPool(2, 4);
+    assertEquals(2, pool.getNumberOfIdleClients());
+
+    IRouletteV2Client client = pool.borrow();
+    assertTrue(client.isConnected());
+    assertEquals(1, pool.getNumberOfIdleClients());
+    pool.release(client);
+    assertEquals(2, pool.getNumberOfIdleClients());
+    assertSame(client, pool.borrow());
+  }
+
+  @Test
+  public void extraConnectionsShouldBeClosedWhenTheyAreReleased() throws IOException {
+    newPool(0, 1);
+    IRouletteV2Client first = pool.borrow();
+    IRouletteV2Client second = pool.borrow();
+    assertNotSame(first, second);
+    pool.release(first);
+    pool.release(second);
+    assertEquals(1, pool.getNumberOfIdleClients());
+    assertFalse(second.isConnected());
+  }
+
+  @Test
+  public void aBrokenIdleConnectionShouldBeReplaced() throws IOException {
+    newPool(1, 1);
+    pool.setHealthCheckInterval(0, TimeUnit.MILLISECONDS);
+    IRouletteV2Client client = pool.borrow();
+    pool.release(client);
+    // the connection is broken, but the client does not know it yet
+    ((RouletteV1ClientImpl) client).clientSocket.shutdownOutput();
+
+    IRouletteV2Client replacement = pool.borrow();
+    assertNotSame(client, replacement);
+    assertFalse(client.isConnected());
+    assertEquals(RouletteV2Protocol.VERSION, replacement.getProtocolVersion());
+  }
+
+  @Test
+  public void anInvalidatedClientShouldBeClosed() throws IOException {
+    newPool(0, 1);
+    IRouletteV2Client client = pool.borrow();
+    pool.invalidate(client);
+    assertFalse(client.isConnected());
+    assertEquals(0, pool.getNumberOfIdleClients());
+  }
+
+  @Test
+  public void operationsShouldBeExecutedWithPooledClients() throws Exception {
+    newPool(1, 4);
+    pool.execute(client -> {
+      client.loadStudents(Arrays.asList(new Student("sacha"), new Student("olivier")));
+      return null;
+    });
+
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    List<Future<Student>> picks = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      picks.add(threads.submit(() -> pool.execute(IRouletteV2Client::pickRandomStudent)));
+    }
+    for (Future<Student> pick : picks) {
+      assertTrue(Arrays.asList("sacha", "olivier").contains(pick.get().getFullname()));
+    }
+    threads.shutdown();
+    assertTrue(pool.getNumberOfIdleClients() <= 4);
+    assertEquals(2, (int) pool.execute(IRouletteV2Client::getNumberOfStudents));
+  }
+
+  @Test(expected = EmptyStoreException.class)
+  public void anEmptyStoreShouldNotInvalidateTheClient() throws IOException, EmptyStoreException {
+    newPool(1, 1);
+    try {
+      pool.execute(IRouletteV2Client::pickRandomStudent);
+    } finally {
+      assertEquals(1, pool.getNumberOfIdleClients());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void aClosedPoolShouldNotLendClients() throws IOException {
+    newPool(1, 1);
+    pool.close();
+    assertEquals(0, pool.getNumberOfIdleClients());
+    pool.borrow();
+  }
+
+}
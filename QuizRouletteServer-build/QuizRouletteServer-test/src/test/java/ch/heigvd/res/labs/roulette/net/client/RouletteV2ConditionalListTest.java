@@ -0,0 +1,102 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsList;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the conditional LIST command
+ * (LIST IF-NONE-MATCH version) of the Roulette protocol (version 2)
+ */
+public class RouletteV2ConditionalListTest {
+
+  @Rule
+  public EphemeralClientServerPair roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION);
+
+  @Test
+  public void theServerShouldOnlySendTheStudentsWhenTheStoreHasChanged() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudent("sacha");
+
+    try (Socket socket = new Socket("localhost", roulettePair.getServer().getPort())) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+      reader.readLine();
+
+      writer.println("LIST IF-NONE-MATCH -1");
+      writer.flush();
+      StudentsList first = JsonObjectMapper.parseJson(reader.readLine(), StudentsList.class);
+      assertEquals(Arrays.asList(new Student("sacha")), first.getStudents());
+      assertNotNull(first.getVersion());
+
+      writer.println("LIST IF-NONE-MATCH " + first.getVersion());
+      writer.flush();
+      assertEquals(RouletteV2Protocol.RESPONSE_NOT_MODIFIED, reader.readLine());
+
+      client.loadStudent("olivier");
+      writer.println("list if-none-match " + first.getVersion());
+      writer.flush();
+      StudentsList second = JsonObjectMapper.parseJson(reader.readLine(), StudentsList.class);
+      assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier")), second.getStudents());
+      assertTrue(second.getVersion() > first.getVersion());
+
+      writer.println("LIST IF-NONE-MATCH twelve");
+      writer.flush();
+      assertTrue(reader.readLine().startsWith("Huh?"));
+    }
+  }
+
+  @Test
+  public void thePlainListResponseShouldNotContainTheVersion() throws IOException {
+    try (Socket socket = new Socket("localhost", roulettePair.getServer().getPort())) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+      reader.readLine();
+      writer.println(RouletteV2Protocol.CMD_LIST);
+      writer.flush();
+      assertEquals("{\"students\":[]}", reader.readLine());
+    }
+  }
+
+  @Test
+  public void changingTheListReturnedShouldNotChangeTheCachedStudents() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudent("sacha");
+    List<Student> listed = client.listStudents();
+    listed.add(new Student("nobody"));
+    assertEquals(Arrays.asList(new Student("sacha")), client.listStudents());
+
+    List<Student> relisted = client.listStudents();
+    client.loadStudent("olivier");
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier")), client.syncStudents());
+    assertEquals(Arrays.asList(new Student("sacha")), relisted);
+  }
+
+  @Test
+  public void theClientShouldSeeTheChangesMadeByOtherClients() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudent("sacha");
+    assertEquals(Arrays.asList(new Student("sacha")), client.listStudents());
+    assertEquals(Arrays.asList(new Student("sacha")), client.listStudents());
+
+    IRouletteV2Client other = new RouletteV2ClientImpl();
+    other.connect("localhost", roulettePair.getServer().getPort());
+    other.clearDataStore();
+    other.loadStudent("fabienne");
+    other.disconnect();
+    assertEquals(Arrays.asList(new Student("fabienne")), client.listStudents());
+  }
+
+}
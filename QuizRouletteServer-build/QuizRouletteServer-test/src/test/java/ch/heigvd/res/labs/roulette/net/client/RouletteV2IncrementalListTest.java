@@ -0,0 +1,104 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsChanges;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the incremental LIST command
+ * (LIST SINCE version) of the Roulette protocol (version 2)
+ */
+public class RouletteV2IncrementalListTest {
+
+  @Rule
+  public EphemeralClientServerPair roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION);
+
+  @Test
+  public void theServerShouldSendTheStudentsAddedSinceAVersion() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudent("sacha");
+
+    try (Socket socket = new Socket("localhost", roulettePair.getServer().getPort())) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+      reader.readLine();
+
+      writer.println("LIST SINCE -1");
+      writer.flush();
+      StudentsChanges snapshot = JsonObjectMapper.parseJson(reader.readLine(), StudentsChanges.class);
+      assertTrue(snapshot.isFullSnapshot());
+      assertEquals(Arrays.asList(new Student("sacha")), snapshot.getStudents());
+
+      client.loadStudent("olivier");
+      writer.println("LIST SINCE " + snapshot.getVersion());
+      writer.flush();
+      StudentsChanges delta = JsonObjectMapper.parseJson(reader.readLine(), StudentsChanges.class);
+      assertFalse(delta.isFullSnapshot());
+      assertEquals(Arrays.asList(new Student("olivier")), delta.getStudents());
+      assertTrue(delta.getVersion() > snapshot.getVersion());
+    }
+  }
+
+  @Test
+  public void theClientShouldKeepItsReplicaUpToDate() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudent("sacha");
+    assertEquals(Arrays.asList(new Student("sacha")), client.syncStudents());
+
+    IRouletteV2Client other = new RouletteV2ClientImpl();
+    other.connect("localhost", roulettePair.getServer().getPort());
+    other.loadStudents(Arrays.asList(new Student("olivier"), new Student("fabienne")));
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("fabienne")), client.syncStudents());
+    assertEquals(client.listStudents(), client.syncStudents());
+
+    other.clearDataStore();
+    other.loadStudent("julien");
+    other.disconnect();
+    assertEquals(Arrays.asList(new Student("julien")), client.syncStudents());
+  }
+
+  @Test
+  public void theReplicaShouldNotGetDuplicatesWhenStudentsAreLoadedConcurrently() throws Exception {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    AtomicBoolean loading = new AtomicBoolean(true);
+    Thread loader = new Thread(() -> {
+      IRouletteV2Client other = new RouletteV2ClientImpl();
+      try {
+        other.connect("localhost", roulettePair.getServer().getPort());
+        for (int i = 0; i < 500; i++) {
+          other.loadStudent("student " + i);
+        }
+        other.disconnect();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      } finally {
+        loading.set(false);
+      }
+    });
+    loader.start();
+    while (loading.get()) {
+      List<Student> listed = client.listStudents();
+      assertEquals(listed.size(), new HashSet<>(listed).size());
+      List<Student> synced = client.syncStudents();
+      assertEquals(synced.size(), new HashSet<>(synced).size());
+    }
+    loader.join();
+    assertEquals(500, client.syncStudents().size());
+  }
+
+}
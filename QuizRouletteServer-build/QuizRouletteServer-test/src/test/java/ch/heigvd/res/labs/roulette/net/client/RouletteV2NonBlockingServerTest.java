@@ -0,0 +1,97 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.server.ServerMode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * This class contains automated tests to validate the Roulette Protocol
+ * (version 2) when the server runs in non-blocking mode
+ */
+public class RouletteV2NonBlockingServerTest {
+
+  @Rule
+  public ExpectedException exception = ExpectedException.none();
+
+  @Rule
+  public EphemeralClientServerPair roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION, ServerMode.NON_BLOCKING);
+
+  @Test
+  public void theServerShouldReturnTheCorrectVersionNumber() throws IOException {
+    assertEquals(RouletteV2Protocol.VERSION, roulettePair.getClient().getProtocolVersion());
+  }
+
+  @Test
+  public void theServerShouldLoadListAndClearStudents() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudent("sacha");
+    client.loadStudents(Arrays.asList(new Student("olivier"), new Student("fabienne")));
+    assertEquals(3, client.getNumberOfStudents());
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("fabienne")), client.listStudents());
+    client.clearDataStore();
+    assertEquals(0, client.getNumberOfStudents());
+  }
+
+  @Test
+  public void theServerShouldPickARandomStudent() throws IOException, EmptyStoreException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudent("sacha");
+    assertEquals("sacha", client.pickRandomStudent().getFullname());
+  }
+
+  @Test
+  public void theServerShouldSendAnErrorResponseWhenRandomIsCalledAndThereIsNoStudent() throws IOException, EmptyStoreException {
+    exception.expect(EmptyStoreException.class);
+    roulettePair.getClient().pickRandomStudent();
+  }
+
+  @Test
+  public void theServerShouldProcessCommandsSentInASingleBurst() throws IOException {
+    try (Socket socket = new Socket("localhost", roulettePair.getServer().getPort())) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+      writer.print("LOAD\r\nJohn Doe\r\nJane Doe\r\nENDOFDATA\r\nLIST\r\nBYE\r\n");
+      writer.flush();
+
+      reader.readLine();
+      assertEquals(RouletteV2Protocol.RESPONSE_LOAD_START, reader.readLine());
+      assertEquals("{\"status\":\"success\",\"numberOfNewStudents\":2}", reader.readLine());
+      assertEquals("{\"students\":[{\"fullname\":\"John Doe\"},{\"fullname\":\"Jane Doe\"}]}", reader.readLine());
+      assertEquals("{\"status\":\"success\",\"numberOfCommands\":3}", reader.readLine());
+      assertNull(reader.readLine());
+    }
+  }
+
+  @Test
+  public void theServerShouldServeManyConcurrentClients() throws Exception {
+    final int port = roulettePair.getServer().getPort();
+    List<IRouletteV2Client> clients = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      IRouletteV2Client client = new RouletteV2ClientImpl();
+      client.connect("localhost", port);
+      clients.add(client);
+    }
+    for (IRouletteV2Client client : clients) {
+      client.loadStudent("student");
+    }
+    for (IRouletteV2Client client : clients) {
+      assertEquals(clients.size(), client.getNumberOfStudents());
+      client.disconnect();
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.protocol.ListPageCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the paged LIST commands
+ * (LIST PAGE and LIST CURSOR) of the Roulette protocol (version 2)
+ */
+public class RouletteV2PagedListTest {
+
+  @Rule
+  public EphemeralClientServerPair roulettePair = new EphemeralClientServerPair(RouletteV2Protocol.VERSION);
+
+  private List<Student> createStudents(int n) {
+    List<Student> students = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      students.add(new Student("student " + i));
+    }
+    return students;
+  }
+
+  @Test
+  public void theServerShouldSendPagesWithACursor() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudents(createStudents(3));
+
+    try (Socket socket = new Socket("localhost", roulettePair.getServer().getPort())) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+      reader.readLine();
+
+      writer.println("LIST PAGE 1 1");
+      writer.flush();
+      ListPageCommandResponse page = JsonObjectMapper.parseJson(reader.readLine(), ListPageCommandResponse.class);
+      assertEquals(Arrays.asList(new Student("student 1")), page.getStudents());
+      assertNotNull(page.getNextCursor());
+
+      client.loadStudent("sacha");
+      writer.println("LIST CURSOR " + page.getNextCursor() + " 10");
+      writer.flush();
+      page = JsonObjectMapper.parseJson(reader.readLine(), ListPageCommandResponse.class);
+      assertEquals(Arrays.asList(new Student("student 2"), new Student("sacha")), page.getStudents());
+      assertNull(page.getNextCursor());
+
+      writer.println("LIST PAGE 0 0");
+      writer.flush();
+      assertTrue(reader.readLine().startsWith("Huh?"));
+      writer.println("LIST CURSOR garbage 10");
+      writer.flush();
+      assertTrue(reader.readLine().startsWith("Huh?"));
+    }
+  }
+
+  @Test
+  public void theClientShouldIterateOverAllTheStudents() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    List<Student> students = createStudents(25);
+    client.loadStudents(students);
+
+    List<Student> iterated = new ArrayList<>();
+    client.iterateStudents(10).forEachRemaining(iterated::add);
+    assertEquals(students, iterated);
+    assertEquals(students, client.streamStudents(7).collect(Collectors.toList()));
+    assertEquals(5, client.streamStudents(1).limit(5).count());
+  }
+
+  @Test
+  public void anEmptyStoreShouldGiveAnEmptyIterator() {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    assertFalse(client.iterateStudents(10).hasNext());
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void theIterationShouldFailWhenTheStoreIsCleared() throws IOException {
+    IRouletteV2Client client = (IRouletteV2Client) roulettePair.getClient();
+    client.loadStudents(createStudents(5));
+    Iterator<Student> students = client.iterateStudents(2);
+    students.next();
+    students.next();
+    client.clearDataStore();
+    client.loadStudents(createStudents(5));
+    students.next();
+  }
+
+}
@@ -0,0 +1,118 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.data.EmptyStoreException;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV3Protocol;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the client and the server
+ * of the Roulette protocol (version 3)
+ */
+public class RouletteV3ClientTest {
+
+  @Rule
+  public EphemeralClientServerPair roulettePair = new EphemeralClientServerPair(RouletteV3Protocol.VERSION);
+
+  @Test
+  public void theServerShouldAnnounceTheProtocolVersion3() throws IOException {
+    assertEquals(RouletteV3Protocol.VERSION, roulettePair.getClient().getProtocolVersion());
+  }
+
+  @Test(expected = EmptyStoreException.class)
+  public void pickingARandomStudentInAnEmptyStoreShouldFail() throws IOException, EmptyStoreException {
+    roulettePair.getClient().pickRandomStudent();
+  }
+
+  @Test
+  public void theClientShouldLoadListAndClearStudents() throws IOException, EmptyStoreException {
+    IRouletteV3Client client = (IRouletteV3Client) roulettePair.getClient();
+    List<Student> students = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      students.add(new Student("Bréchet Julien " + i));
+    }
+    client.loadStudents(students);
+    client.loadStudent("sacha");
+    assertEquals(3001, client.getNumberOfStudents());
+    assertTrue(client.pickRandomStudent().getFullname().length() > 0);
+
+    List<Student> expected = new ArrayList<>(students);
+    expected.add(new Student("sacha"));
+    assertEquals(expected, client.listStudents());
+
+    client.clearDataStore();
+    assertEquals(0, client.getNumberOfStudents());
+    assertTrue(client.listStudents().isEmpty());
+  }
+
+  @Test
+  public void theRepliesOfAPipelineShouldBeResolvedInOrder() throws IOException {
+    IRoulettePipeline pipeline = ((IRouletteV3Client) roulettePair.getClient()).pipeline();
+    CompletableFuture<Student> empty = pipeline.pickRandomStudent();
+    CompletableFuture<Void> load = pipeline.loadStudents(Arrays.asList(new Student("sacha")));
+    CompletableFuture<Student> pick = pipeline.pickRandomStudent();
+    CompletableFuture<String> version = pipeline.getProtocolVersion();
+    CompletableFuture<List<Student>> list = pipeline.listStudents();
+    CompletableFuture<Void> clear = pipeline.clearDataStore();
+    CompletableFuture<Integer> count = pipeline.getNumberOfStudents();
+    pipeline.execute();
+
+    assertTrue(empty.isCompletedExceptionally());
+    assertNull(load.join());
+    assertEquals("sacha", pick.join().getFullname());
+    assertEquals(RouletteV3Protocol.VERSION, version.join());
+    assertEquals(Arrays.asList(new Student("sacha")), list.join());
+    assertTrue(clear.isDone());
+    assertEquals(0, (int) count.join());
+  }
+
+  @Test
+  public void pipelinedRequestsShouldBeAnsweredInOrder() throws IOException {
+    try (Socket socket = new Socket("localhost", roulettePair.getServer().getPort())) {
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      OutputStream out = socket.getOutputStream();
+      assertEquals(RouletteV3Protocol.STATUS_OK, in.readByte());
+      assertEquals(3, in.readByte());
+      in.readFully(new byte[3]);
+
+      out.write(new byte[]{
+        RouletteV3Protocol.OP_LOAD, 0x02, 0x01, 'a', 0x01, 'b',
+        RouletteV3Protocol.OP_INFO,
+        RouletteV3Protocol.OP_BYE});
+      out.flush();
+      assertArrayEquals(new byte[]{RouletteV3Protocol.STATUS_OK, 0x02}, readBytes(in, 2));
+      assertArrayEquals(new byte[]{RouletteV3Protocol.STATUS_OK, 0x03, '3', '.', '0', 0x02}, readBytes(in, 6));
+      assertArrayEquals(new byte[]{RouletteV3Protocol.STATUS_OK, 0x03}, readBytes(in, 2));
+      assertEquals(-1, in.read());
+    }
+    assertEquals(Arrays.asList(new Student("a"), new Student("b")), ((IRouletteV3Client) roulettePair.getClient()).listStudents());
+  }
+
+  @Test
+  public void anUnknownOpcodeShouldCloseTheConnection() throws IOException {
+    try (Socket socket = new Socket("localhost", roulettePair.getServer().getPort())) {
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      readBytes(in, 5);
+      socket.getOutputStream().write(0x42);
+      assertEquals(RouletteV3Protocol.STATUS_UNKNOWN_OPCODE, in.readByte());
+      assertEquals(-1, in.read());
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,115 @@
+package ch.heigvd.res.labs.roulette.net.client;
+
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import ch.heigvd.res.labs.roulette.net.server.ClientWorkerExecutors;
+import ch.heigvd.res.labs.roulette.net.server.RouletteServer;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the execution strategies
+ * used by the server to run the client workers
+ */
+public class RouletteWorkerExecutorTest {
+
+  private RouletteServer server;
+  private ExecutorService workerExecutor;
+
+  @After
+  public void stopServer() throws IOException {
+    if (server != null) {
+      server.stopServer();
+    }
+    // the executor belongs to the caller, not to the server
+    if (workerExecutor != null) {
+      workerExecutor.shutdownNow();
+    }
+  }
+
+  private RouletteServer startServer(ExecutorService workerExecutor) throws IOException {
+    this.workerExecutor = workerExecutor;
+    server = new RouletteServer(RouletteV2Protocol.VERSION);
+    server.setWorkerExecutor(workerExecutor);
+    server.startServer();
+    return server;
+  }
+
+  @Test
+  public void aStoppedServerShouldServeClientsWhenItIsStartedAgain() throws IOException {
+    server = new RouletteServer(RouletteV2Protocol.VERSION);
+    for (int i = 0; i < 2; i++) {
+      server.startServer();
+      IRouletteV2Client client = new RouletteV2ClientImpl();
+      client.connect("localhost", server.getPort());
+      assertEquals(RouletteV2Protocol.VERSION, client.getProtocolVersion());
+      client.disconnect();
+      server.stopServer();
+    }
+    server = null;
+  }
+
+  @Test
+  public void aSuppliedExecutorShouldNotBeShutDownByTheServer() throws IOException {
+    startServer(ClientWorkerExecutors.newBoundedPool(2, 10));
+    server.stopServer();
+    server.startServer();
+    IRouletteV2Client client = new RouletteV2ClientImpl();
+    client.connect("localhost", server.getPort());
+    client.loadStudent("sacha");
+    assertEquals(1, client.getNumberOfStudents());
+    client.disconnect();
+    assertFalse(workerExecutor.isShutdown());
+  }
+
+  @Test
+  public void aBoundedPoolShouldQueueSessionsUntilAWorkerIsAvailable() throws Exception {
+    final int port = startServer(ClientWorkerExecutors.newBoundedPool(1, 10)).getPort();
+    IRouletteV2Client first = new RouletteV2ClientImpl();
+    first.connect("localhost", port);
+    first.loadStudent("sacha");
+
+    ExecutorService background = Executors.newSingleThreadExecutor();
+    try {
+      Future<Integer> second = background.submit(() -> {
+        IRouletteV2Client client = new RouletteV2ClientImpl();
+        client.connect("localhost", port);
+        int n = client.getNumberOfStudents();
+        client.disconnect();
+        return n;
+      });
+      try {
+        second.get(500, TimeUnit.MILLISECONDS);
+        fail("The second session should wait for the only worker thread");
+      } catch (TimeoutException expected) {
+      }
+      first.disconnect();
+      assertEquals(1, (int) second.get(5, TimeUnit.SECONDS));
+    } finally {
+      background.shutdownNow();
+    }
+  }
+
+  @Test
+  public void virtualThreadsShouldBeUsedWhenTheJvmSupportsThem() throws Exception {
+    ExecutorService workerExecutor;
+    try {
+      workerExecutor = ClientWorkerExecutors.newVirtualThreadPerConnection();
+    } catch (UnsupportedOperationException ex) {
+      assertTrue(Runtime.version().feature() < 21);
+      return;
+    }
+    IRouletteV2Client client = new RouletteV2ClientImpl();
+    client.connect("localhost", startServer(workerExecutor).getPort());
+    client.loadStudent("sacha");
+    assertEquals(1, client.getNumberOfStudents());
+    client.disconnect();
+  }
+
+}
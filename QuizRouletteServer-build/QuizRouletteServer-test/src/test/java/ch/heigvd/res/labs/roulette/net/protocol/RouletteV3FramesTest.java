@@ -0,0 +1,59 @@
+package ch.heigvd.res.labs.roulette.net.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate the encoding of the fields
+ * of the Roulette protocol (version 3)
+ */
+public class RouletteV3FramesTest {
+
+  @Test
+  public void varintsShouldBeDecodedAsTheyWereEncoded() throws IOException {
+    int[] values = {0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE};
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int value : values) {
+      RouletteV3Frames.writeVarint(out, value);
+    }
+    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+    for (int value : values) {
+      assertEquals(value, RouletteV3Frames.readVarint(in));
+    }
+    assertEquals(-1, in.read());
+  }
+
+  @Test
+  public void smallNumbersShouldTakeASingleByte() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RouletteV3Frames.writeVarint(out, 127);
+    assertEquals(1, out.size());
+    RouletteV3Frames.writeVarint(out, 300);
+    assertArrayEquals(new byte[]{0x7F, (byte) 0xAC, 0x02}, out.toByteArray());
+  }
+
+  @Test
+  public void namesShouldBeDecodedAsTheyWereEncoded() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RouletteV3Frames.writeString(out, "Bréchet Julien");
+    RouletteV3Frames.writeString(out, "");
+    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+    assertEquals("Bréchet Julien", RouletteV3Frames.readString(in));
+    assertEquals("", RouletteV3Frames.readString(in));
+  }
+
+  @Test(expected = IOException.class)
+  public void aMalformedVarintShouldBeRejected() throws IOException {
+    RouletteV3Frames.readVarint(new ByteArrayInputStream(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01}));
+  }
+
+  @Test(expected = EOFException.class)
+  public void aTruncatedNameShouldBeRejected() throws IOException {
+    RouletteV3Frames.readString(new ByteArrayInputStream(new byte[]{0x05, 'a', 'b'}));
+  }
+
+}
@@ -0,0 +1,84 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import ch.heigvd.res.labs.roulette.data.IStudentsStore;
+import ch.heigvd.res.labs.roulette.data.IndexedStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV1Protocol;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate that the handlers process
+ * all the commands sent at once before sending their responses, in a single
+ * write
+ */
+public class PipelinedCommandsTest {
+
+  private final IStudentsStore store = new IndexedStudentsStoreImpl();
+
+  /*
+   * Records what is written, counting the writes reaching the socket
+   */
+  private static class CountingOutputStream extends OutputStream {
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int numberOfWrites = 0;
+
+    @Override
+    public void write(int b) {
+      numberOfWrites++;
+      bytes.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      numberOfWrites++;
+      bytes.write(b, off, len);
+    }
+  }
+
+  private static String[] lines(CountingOutputStream out) {
+    return new String(out.bytes.toByteArray()).split("\r?\n");
+  }
+
+  @Test
+  public void theResponsesOfV1PipelinedCommandsShouldBeSentAtOnce() throws IOException {
+    String commands = "INFO\nLOAD\nsacha\nolivier\nENDOFDATA\nINFO\nRANDOM\nHELP\nBYE\n";
+    CountingOutputStream out = new CountingOutputStream();
+    new RouletteV1ClientHandler(store).handleClientConnection(new ByteArrayInputStream(commands.getBytes()), out);
+
+    // the greeting, then every response
+    assertEquals(2, out.numberOfWrites);
+    String[] responses = lines(out);
+    assertEquals(7, responses.length);
+    assertTrue(responses[1].contains("\"numberOfStudents\":0"));
+    assertEquals(RouletteV1Protocol.RESPONSE_LOAD_START, responses[2]);
+    assertEquals(RouletteV1Protocol.RESPONSE_LOAD_DONE, responses[3]);
+    assertTrue(responses[4].contains("\"numberOfStudents\":2"));
+    assertTrue(responses[5].contains("fullname"));
+    assertTrue(responses[6].startsWith("Commands: "));
+  }
+
+  @Test
+  public void theResponsesOfV2PipelinedCommandsShouldBeSentAtOnce() throws IOException {
+    String commands = "LOAD 2\nsacha\nolivier\nLIST\nRANDOM\nCLEAR\nINFO\nBYE\n";
+    CountingOutputStream out = new CountingOutputStream();
+    new RouletteV2ClientHandler(store).handleClientConnection(new ByteArrayInputStream(commands.getBytes()), out);
+
+    assertEquals(2, out.numberOfWrites);
+    String[] responses = lines(out);
+    assertEquals(8, responses.length);
+    assertEquals(RouletteV2Protocol.RESPONSE_COUNTED_LOAD_START, responses[1]);
+    assertTrue(responses[2].contains("\"numberOfNewStudents\":2"));
+    assertTrue(responses[3].contains("olivier"));
+    assertTrue(responses[4].contains("fullname"));
+    assertEquals(RouletteV2Protocol.RESPONSE_CLEAR_DONE, responses[5]);
+    assertTrue(responses[6].contains("\"numberOfStudents\":0"));
+    assertTrue(responses[7].contains("\"numberOfCommands\":6"));
+  }
+
+}
@@ -0,0 +1,53 @@
+package ch.heigvd.res.labs.roulette.net.server;
+
+import ch.heigvd.res.labs.roulette.data.IStudentsStore;
+import ch.heigvd.res.labs.roulette.data.IndexedStudentsStoreImpl;
+import ch.heigvd.res.labs.roulette.data.JsonObjectMapper;
+import ch.heigvd.res.labs.roulette.data.Student;
+import ch.heigvd.res.labs.roulette.data.StudentsList;
+import ch.heigvd.res.labs.roulette.net.protocol.InfoCommandResponse;
+import ch.heigvd.res.labs.roulette.net.protocol.RouletteV2Protocol;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class contains automated tests to validate that the ResponseCache
+ * serves the encoded responses as long as the store does not change
+ */
+public class ResponseCacheTest {
+
+  private final IStudentsStore store = new IndexedStudentsStoreImpl();
+  private final ResponseCache responses = new ResponseCache(store, RouletteV2Protocol.VERSION, 2);
+
+  @Test
+  public void theSameResponsesShouldBeServedUntilTheStoreChanges() throws IOException {
+    store.addStudent(new Student("sacha"));
+    byte[] info = responses.getInfoResponse();
+    byte[] list = responses.getListResponse();
+    assertSame(info, responses.getInfoResponse());
+    assertSame(list, responses.getListResponse());
+
+    store.addStudent(new Student("olivier"));
+    assertNotSame(info, responses.getInfoResponse());
+    assertEquals(2, JsonObjectMapper.parseJson(new String(responses.getInfoResponse()).trim(), InfoCommandResponse.class).getNumberOfStudents());
+    assertEquals(Arrays.asList(new Student("sacha"), new Student("olivier")),
+      JsonObjectMapper.parseJson(new String(responses.getListResponse()).trim(), StudentsList.class).getStudents());
+  }
+
+  @Test
+  public void responsesShouldBeTheOnesOfTheHandlers() throws IOException {
+    store.addStudent(new Student("sacha"));
+    assertEquals("{\"protocolVersion\":\"2.0\",\"numberOfStudents\":1}" + System.lineSeparator(), new String(responses.getInfoResponse()));
+    assertEquals("{\"students\":[{\"fullname\":\"sacha\"}]}" + System.lineSeparator(), new String(responses.getListResponse()));
+  }
+
+  @Test
+  public void largeListsShouldNotBeCached() throws IOException {
+    store.addStudents(Arrays.asList(new Student("sacha"), new Student("olivier"), new Student("fabienne")));
+    assertNull(responses.getListResponse());
+    assertNotNull(responses.getInfoResponse());
+  }
+
+}